@@ -0,0 +1,29 @@
+package parking.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import parking.ResultSink;
+
+
+/**
+ * A ResultSink that hands every value to a JMH Blackhole, so results are consumed but not stored.
+ */
+final class BlackholeSink implements ResultSink {
+    private final Blackhole blackhole;
+
+    BlackholeSink(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void writeInt(int value) {
+        blackhole.consume(value);
+    }
+
+    @Override
+    public void writeSeparator() {
+    }
+
+    @Override
+    public void endLine() {
+    }
+}
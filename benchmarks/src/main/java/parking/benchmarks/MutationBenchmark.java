@@ -0,0 +1,102 @@
+package parking.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import parking.AVLTree;
+import parking.ParkingLot;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Operations that change the network. Every iteration runs one batch of BATCH operations on a
+ * freshly built network, so the occupancy level barely drifts while it is measured.
+ * Scores are the time of a whole batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = MutationBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = MutationBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MutationBenchmark {
+    static final int BATCH = 1000;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int lotCount;
+
+    @Param({"0.0", "0.5", "0.9", "1.0"})
+    double occupancy;
+
+    private AVLTree tree;
+    private int[] queries;
+    // Capacities for insert (odd, so not in the network) and delete (even, each one a lot).
+    private int[] freshCapacities;
+    private int[] existingCapacities;
+    private int next;
+    private int truckId;
+    private BlackholeSink sink;
+
+
+    @Setup(Level.Iteration)
+    public void setup(Blackhole blackhole) {
+        tree = Networks.build(lotCount, occupancy);
+        queries = Networks.randomCapacities(lotCount, BATCH, 42);
+        sink = new BlackholeSink(blackhole);
+
+        Random random = new Random(7);
+        freshCapacities = new int[BATCH];
+        existingCapacities = new int[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            freshCapacities[i] = 2 * random.nextInt(lotCount + 1) + 1;
+            existingCapacities[i] = 2 * (1 + random.nextInt(lotCount));
+        }
+        next = 0;
+        truckId = Integer.MAX_VALUE / 2;
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) % BATCH;
+        return index;
+    }
+
+
+    @Benchmark
+    public void insert() {
+        tree.insert(new ParkingLot(freshCapacities[nextIndex()], Networks.TRUCK_LIMIT));
+    }
+
+    @Benchmark
+    public void delete() {
+        tree.delete(existingCapacities[nextIndex()]);
+    }
+
+    @Benchmark
+    public void addTruck() {
+        tree.add_truck(truckId++, queries[nextIndex()], sink);
+    }
+
+    @Benchmark
+    public void ready() {
+        tree.ready(queries[nextIndex()], sink);
+    }
+
+    @Benchmark
+    public void load() {
+        int capacity = queries[nextIndex()];
+        tree.load(capacity, 4 * capacity, sink);
+    }
+}
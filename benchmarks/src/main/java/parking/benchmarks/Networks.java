@@ -0,0 +1,55 @@
+package parking.benchmarks;
+
+import parking.AVLTree;
+import parking.ByteResultSink;
+
+import java.util.Random;
+
+
+/**
+ * Builds parking networks of a given size and occupancy for the benchmarks.
+ * Lot capacities are the even numbers 2, 4, ..., 2 * lotCount, so odd capacities are never lots.
+ */
+final class Networks {
+    static final int TRUCK_LIMIT = 4;
+
+    private Networks() {
+    }
+
+
+    // Creates lotCount lots and fills each to occupancy * TRUCK_LIMIT trucks, half of them ready.
+    static AVLTree build(int lotCount, double occupancy) {
+        AVLTree tree = new AVLTree();
+        int[] capacities = new int[lotCount];
+        int[] truckLimits = new int[lotCount];
+        for (int i = 0; i < lotCount; i++) {
+            capacities[i] = 2 * (i + 1);
+            truckLimits[i] = TRUCK_LIMIT;
+        }
+        tree.create_parking_lots(capacities, truckLimits, 0, lotCount);
+
+        int trucksPerLot = (int) Math.round(occupancy * TRUCK_LIMIT);
+        ByteResultSink sink = new ByteResultSink();
+        int truckId = 0;
+        for (int i = 0; i < lotCount; i++) {
+            for (int t = 0; t < trucksPerLot; t++) {
+                tree.add_truck(truckId++, capacities[i], sink);
+            }
+            for (int t = 0; t < trucksPerLot / 2; t++) {
+                tree.ready(capacities[i], sink);
+            }
+            sink.clear();
+        }
+        return tree;
+    }
+
+    // Random capacities over the whole key range, lots and gaps alike.
+    static int[] randomCapacities(int lotCount, int length, long seed) {
+        Random random = new Random(seed);
+        int[] capacities = new int[length];
+        for (int i = 0; i < length; i++) {
+            capacities[i] = 1 + random.nextInt(2 * lotCount + 1);
+        }
+        return capacities;
+    }
+}
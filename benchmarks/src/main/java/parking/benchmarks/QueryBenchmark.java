@@ -0,0 +1,79 @@
+package parking.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import parking.AVLTree;
+import parking.ParkingLot;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Read-only operations: count and the fallback searches, which do not change the network
+ * and can therefore run back to back on one network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryBenchmark {
+    private static final int QUERY_MASK = (1 << 12) - 1;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int lotCount;
+
+    @Param({"0.0", "0.5", "0.9", "1.0"})
+    double occupancy;
+
+    private AVLTree tree;
+    private int[] queries;
+    private int next = 0;
+    private BlackholeSink sink;
+
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        tree = Networks.build(lotCount, occupancy);
+        queries = Networks.randomCapacities(lotCount, QUERY_MASK + 1, 42);
+        sink = new BlackholeSink(blackhole);
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & QUERY_MASK;
+        return queries[next];
+    }
+
+
+    @Benchmark
+    public void count() {
+        tree.count(nextQuery(), sink);
+    }
+
+    @Benchmark
+    public ParkingLot smallerBiggest() {
+        return tree.smallerBiggest(nextQuery());
+    }
+
+    @Benchmark
+    public ParkingLot smallestBiggerHasReady() {
+        return tree.smallestBiggerHasReady(nextQuery());
+    }
+
+    @Benchmark
+    public ParkingLot smallestBiggerHasWaiting() {
+        return tree.smallestBiggerHasWaiting(nextQuery());
+    }
+}
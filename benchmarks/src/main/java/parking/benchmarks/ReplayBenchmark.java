@@ -0,0 +1,106 @@
+package parking.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import parking.ArrayAVLTree;
+import parking.AVLTree;
+import parking.ByteResultSink;
+import parking.Commands;
+import parking.MappedCommandParser;
+import parking.ParkingEngine;
+import parking.PrimitiveTruckTree;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * End-to-end replays of the input files on a fresh engine. The input is parsed once in the setup,
+ * so only command execution and output encoding are measured.
+ * The inputs directory is taken from the inputs.dir system property, "inputs" by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({"type1-small.txt", "type2-small.txt", "type3-small.txt", "type4.txt", "type5.txt"})
+    String input;
+
+    @Param({"avl", "primitive", "array", "offheap"})
+    String engine;
+
+    private int[] opcodes;
+    private int[] firsts;
+    private int[] seconds;
+    private int count;
+    private final ByteResultSink sink = new ByteResultSink(1 << 20);
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String directory = System.getProperty("inputs.dir", "inputs");
+        int batch = 1 << 14;
+        int[] batchOpcodes = new int[batch];
+        int[] batchFirsts = new int[batch];
+        int[] batchSeconds = new int[batch];
+        opcodes = new int[batch];
+        firsts = new int[batch];
+        seconds = new int[batch];
+        count = 0;
+
+        try (MappedCommandParser parser = new MappedCommandParser(Paths.get(directory, input))) {
+            int parsed;
+            while ((parsed = parser.parse(batchOpcodes, batchFirsts, batchSeconds)) != 0) {
+                if (count + parsed > opcodes.length) {
+                    opcodes = Arrays.copyOf(opcodes, opcodes.length * 2);
+                    firsts = Arrays.copyOf(firsts, firsts.length * 2);
+                    seconds = Arrays.copyOf(seconds, seconds.length * 2);
+                }
+                System.arraycopy(batchOpcodes, 0, opcodes, count, parsed);
+                System.arraycopy(batchFirsts, 0, firsts, count, parsed);
+                System.arraycopy(batchSeconds, 0, seconds, count, parsed);
+                count += parsed;
+            }
+        }
+    }
+
+    private ParkingEngine newEngine() {
+        switch (engine) {
+            case "primitive":
+                return new PrimitiveTruckTree();
+            case "array":
+                return new ArrayAVLTree(false);
+            case "offheap":
+                return new ArrayAVLTree(true);
+            default:
+                return new AVLTree();
+        }
+    }
+
+
+    @Benchmark
+    public int replay() {
+        ParkingEngine parkingEngine = newEngine();
+        sink.clear();
+        for (int i = 0; i < count; i++) {
+            Commands.execute(parkingEngine, opcodes[i], firsts[i], seconds[i], sink);
+        }
+        return sink.size();
+    }
+}
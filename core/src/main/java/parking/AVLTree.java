@@ -0,0 +1,1276 @@
+package parking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * A modified AVL Tree implementation that organizes Parking Lots based on capacity constraints.
+ * Supports standard rotation operations to maintain O(log N) height balance.
+ */
+public class AVLTree implements ParkingEngine, LotIndex {
+    private Node root;
+    // Number of ParkingLots in the tree.
+    private int size = 0;
+
+    // Cursors reused by the commands. load keeps its own as it calls reAdd_truck while walking.
+    final LotCursor searchCursor = new LotCursor(this);
+    final LotCursor loadCursor = new LotCursor(this);
+    private final LoadPlan loadPlan = new LoadPlan();
+    private final LoadLots loadLots = new TreeLoadLots();
+    // Runs add_truck, ready and delete_parking_lot with this tree as its index.
+    private final IndexedParkingNetwork network = new IndexedParkingNetwork(this);
+
+    // In the persistent mode every change to a lot is also put into an immutable copy of the lots.
+    // A command builds its changes into nextVersion and publishes it as version when it is done,
+    // so snapshot() only ever hands out the lots as they are between two commands.
+    private final boolean persistent;
+    private LotSnapshot.Lot nextVersion;
+    private volatile LotSnapshot.Lot version;
+
+
+    public AVLTree() {
+        this(false);
+    }
+
+    public AVLTree(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+
+    // Returns an immutable view of the lots as the last finished command left them. Only available in
+    // the persistent mode. The writer may go on while other threads read the view.
+    public LotSnapshot snapshot() {
+        if (!persistent) {
+            throw new IllegalStateException("Snapshots need an AVLTree in the persistent mode");
+        }
+        return new LotSnapshot(version);
+    }
+
+    // Puts the current state of the lot into the next version.
+    private void stage(ParkingLot parkingLot) {
+        if (persistent) {
+            nextVersion = LotSnapshot.put(nextVersion, parkingLot);
+        }
+    }
+
+    // Makes the next version the one snapshot() hands out. Called once at the end of every command.
+    void publish() {
+        if (persistent) {
+            version = nextVersion;
+        }
+    }
+
+
+    private Node rightRotate(Node node) {
+
+        Node leftern = node.left;
+        Node lefternRightern = leftern.right;
+
+        // Update parent pointers.
+        leftern.parent = node.parent;
+        if (node.parent != null) {
+            if (node.parent.left == node) {
+                node.parent.left = leftern;
+            } else {
+                node.parent.right = leftern;
+            }
+        } else {
+            root = leftern;
+        }
+
+        // Rotate.
+        leftern.right = node;
+        node.left = lefternRightern;
+
+        // Update parent references.
+        node.parent = leftern;
+        if (lefternRightern != null) {
+            lefternRightern.parent = node;
+        }
+
+        // Update heights and subtree counts.
+        updateNode(node);
+        updateNode(leftern);
+
+        return leftern;
+    }
+
+
+    private Node leftRotate(Node node) {
+
+        Node rightern = node.right;
+        Node rightenLeftern = rightern.left;
+
+        //Update parent pointers.
+        rightern.parent = node.parent;
+        if (node.parent != null) {
+            if (node.parent.left == node) {
+                node.parent.left = rightern;
+            } else {
+                node.parent.right = rightern;
+            }
+        } else {
+            root = rightern;
+        }
+
+        //Rotate.
+        rightern.left = node;
+        node.right = rightenLeftern;
+
+        // Update parent references
+        node.parent = rightern;
+        if (rightenLeftern != null) {
+            rightenLeftern.parent = node;
+        }
+
+        // Update heights and subtree counts.
+        updateNode(node);
+        updateNode(rightern);
+
+        return rightern;
+    }
+
+
+    private int getHeight(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        return node.height;
+    }
+
+
+    private int getBalance(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        return getHeight(node.left) - getHeight(node.right);
+    }
+
+    // Updates the height of a node based on its children's heights.
+    private void updateHeight(Node node) {
+        int leftHeight = 0;
+        int rightHeight = 0;
+
+        if (node.left != null) {
+            leftHeight = node.left.height;
+        }
+        if (node.right != null) {
+            rightHeight = node.right.height;
+        }
+        node.height = Math.max(leftHeight, rightHeight) + 1;
+    }
+
+
+    private int getSubtreeTrucks(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        return node.subtreeTrucks;
+    }
+
+    private boolean subtreeHasFree(Node node) {
+        if (node == null) {
+            return false;
+        }
+        return node.subtreeHasFree;
+    }
+
+    // Updates the height and the subtree aggregates of a node based on its children.
+    void updateNode(Node node) {
+        updateHeight(node);
+        node.subtreeTrucks = getSubtreeTrucks(node.left) + node.parkingLot.getOccupiedCapacity()
+                + getSubtreeTrucks(node.right);
+        node.subtreeHasFree = subtreeHasFree(node.left) || isNotFull(node.parkingLot)
+                || subtreeHasFree(node.right);
+        node.subtreeHasWaiting = subtreeHasWaiting(node.left) || hasWaiting(node.parkingLot)
+                || subtreeHasWaiting(node.right);
+        node.subtreeHasReady = subtreeHasReady(node.left) || hasReady(node.parkingLot)
+                || subtreeHasReady(node.right);
+    }
+
+    private boolean subtreeHasWaiting(Node node) {
+        if (node == null) {
+            return false;
+        }
+        return node.subtreeHasWaiting;
+    }
+
+    private boolean subtreeHasReady(Node node) {
+        if (node == null) {
+            return false;
+        }
+        return node.subtreeHasReady;
+    }
+
+
+    // Updates the given node and all of its ancestors after a ParkingLot's occupancy changed.
+    void updatePath(Node node) {
+        stage(node.parkingLot);
+        while (node != null) {
+            updateNode(node);
+            node = node.parent;
+        }
+    }
+
+
+    //Finds the node with minimum value in the given subtree.
+    private Node findMin(Node node) {
+        Node current = node;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current;
+    }
+
+
+    // Returns a new cursor over the ParkingLots of this tree.
+    public LotCursor cursor() {
+        return new LotCursor(this);
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+
+    // Finds the smaller biggest capacity ParkingLot.
+    // Also checks if it is full. If full goes to the next one.
+    public ParkingLot smallerBiggest(int capacity) {
+        boolean fellBack = searchCursor.seekLower(capacity) && !isNotFull(searchCursor.getParkingLot());
+        if (fellBack) {
+            searchCursor.previousNotFull();
+        }
+        recordFallback(ParkingMetrics.NOT_FULL, fellBack);
+        return currentLot(searchCursor);
+    }
+
+
+    // Finds the smaller biggest capacity ParkingLot.
+    public ParkingLot smallerBiggestCandidate(int capacity1) {
+        searchCursor.seekLower(capacity1);
+        return currentLot(searchCursor);
+    }
+
+
+    // Finds the smallest bigger ParkingLot. Also checks if it's ready section is not empty.
+    public ParkingLot smallestBiggerHasReady(int capacity) {
+        boolean fellBack = searchCursor.seekHigher(capacity) && !hasReady(searchCursor.getParkingLot());
+        if (fellBack) {
+            searchCursor.nextWithReady();
+        }
+        recordFallback(ParkingMetrics.READY, fellBack);
+        return currentLot(searchCursor);
+    }
+
+
+    // Finds the smallest bigger ParkingLot. Also checks if it's waiting section is not empty.
+    public ParkingLot smallestBiggerHasWaiting(int capacity) {
+        boolean fellBack = searchCursor.seekHigher(capacity) && !hasWaiting(searchCursor.getParkingLot());
+        if (fellBack) {
+            searchCursor.nextWithWaiting();
+        }
+        recordFallback(ParkingMetrics.WAITING, fellBack);
+        return currentLot(searchCursor);
+    }
+
+
+    // Finds the smallest bigger capacity ParkingLot.
+    public ParkingLot smallestBiggerCandidate(int capacity) {
+        searchCursor.seekHigher(capacity);
+        return currentLot(searchCursor);
+    }
+
+
+    // Records how many nodes the search cursor walked past its first candidate, 0 if it did not fall back.
+    private void recordFallback(int kind, boolean fellBack) {
+        if (ParkingMetrics.ENABLED) {
+            ParkingMetrics.recordFallback(kind, fellBack ? searchCursor.getSteps() : 0);
+        }
+    }
+
+    // Returns the ParkingLot the cursor is on, or null if it ran off the tree.
+    private ParkingLot currentLot(LotCursor cursor) {
+        if (!cursor.isValid()) {
+            return null;
+        }
+        return cursor.getParkingLot();
+    }
+
+
+    // LotIndex, on the search cursor. A search leaves the cursor on the lot it found, so an update right
+    // after it does not have to look for the lot's node again.
+
+    public ParkingLot find(int capacity) {
+        if (searchCursor.seekCeiling(capacity) && searchCursor.getParkingLot().getCapacity() == capacity) {
+            return searchCursor.getParkingLot();
+        }
+        return null;
+    }
+
+    public ParkingLot floor(int capacity) {
+        searchCursor.seekFloor(capacity);
+        return currentLot(searchCursor);
+    }
+
+    public ParkingLot ceiling(int capacity) {
+        searchCursor.seekCeiling(capacity);
+        return currentLot(searchCursor);
+    }
+
+    public ParkingLot floorNotFull(int capacity) {
+        bestFitNode(capacity);
+        return currentLot(searchCursor);
+    }
+
+    public ParkingLot ceilingWithWaiting(int capacity) {
+        waitingNode(capacity);
+        return currentLot(searchCursor);
+    }
+
+    public ParkingLot ceilingWithReady(int capacity) {
+        if (searchCursor.seekCeiling(capacity) && !hasReady(searchCursor.getParkingLot())) {
+            searchCursor.nextWithReady();
+        }
+        return currentLot(searchCursor);
+    }
+
+    public void update(ParkingLot parkingLot) {
+        boolean found = searchCursor.isValid() && searchCursor.getParkingLot() == parkingLot;
+        if (!found) {
+            found = searchCursor.seekCeiling(parkingLot.getCapacity()) && searchCursor.getParkingLot() == parkingLot;
+        }
+        if (found) {
+            updatePath(searchCursor.getNode());
+        }
+    }
+
+    // Moves the trucks in one walk down the smaller lots, see rehomeTrucks, and drops the rest.
+    @Override
+    public void rehome(ParkingLot removed, int below) {
+        rehomeTrucks(removed, below);
+        dropTrucks(removed);
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    // Return true if the given ParkingLot is not full.
+    boolean isNotFull(ParkingLot parkingLot){
+        if (parkingLot.getTruckLimit() == parkingLot.getOccupiedCapacity()){
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+
+    // Returns true if the given ParkingLot's waiting section is not empty.
+    boolean hasWaiting(ParkingLot parkingLot){
+        if (parkingLot.getWaitingCount() != 0){
+            return true;
+        }
+        return false;
+    }
+
+
+    // Returns true if the given ParkingLot's ready section is not empty.
+    boolean hasReady(ParkingLot parkingLot){
+        if (parkingLot.getReadyCount() != 0){
+            return true;
+        }
+        return false;
+    }
+
+
+    //creates parking lots.
+    public void create_parking_lot(int capacity, int truckLimit){
+        ParkingLot newParkingLot = newParkingLot(capacity, truckLimit);
+        insert(newParkingLot);
+        publish();
+    }
+
+    // Creates a run of parking lots at once through bulkLoad.
+    public void create_parking_lots(int[] capacities, int[] truckLimits, int from, int count) {
+        ParkingLot[] parkingLots = new ParkingLot[count];
+        for (int i = 0; i < count; i++) {
+            parkingLots[i] = newParkingLot(capacities[from + i], truckLimits[from + i]);
+        }
+        bulkLoad(parkingLots);
+        publish();
+    }
+
+    ParkingLot newParkingLot(int capacity, int truckLimit) {
+        return new ParkingLot(capacity, truckLimit);
+    }
+
+
+    // Writes every lot and its trucks into a checkpoint file, see Checkpoint for the format.
+    public void checkpoint(Path path) throws IOException {
+        checkpoint(path, 0);
+    }
+
+    // Writes a checkpoint that records how many commands the network had run, so a restart
+    // only has to replay the ones after it.
+    public void checkpoint(Path path, long commandCount) throws IOException {
+        Node[] nodes = new Node[size];
+        collectInOrder(root, nodes, 0);
+
+        try (Checkpoint.Writer writer = new Checkpoint.Writer(path, commandCount)) {
+            writer.writeInt(size);
+            int previousCapacity = 0;
+            for (Node node : nodes) {
+                ParkingLot parkingLot = node.parkingLot;
+                writer.writeInt(parkingLot.getCapacity() - previousCapacity);
+                writer.writeInt(parkingLot.getTruckLimit());
+                writer.writeInt(parkingLot.getWaitingCount());
+                writer.writeInt(parkingLot.getReadyCount());
+                writeTrucks(parkingLot, writer);
+                previousCapacity = parkingLot.getCapacity();
+            }
+            writer.commit();
+        }
+    }
+
+    // Restores the lots and trucks of a checkpoint into this tree, which has to be empty.
+    // The lots come sorted, so the tree is built balanced in one pass.
+    // Returns the number of commands recorded in the checkpoint.
+    public long restore(Path path) throws IOException {
+        if (root != null) {
+            throw new IllegalStateException("A checkpoint can only be restored into an empty tree");
+        }
+
+        try (Checkpoint.Reader reader = new Checkpoint.Reader(path)) {
+            ParkingLot[] parkingLots = new ParkingLot[reader.readInt()];
+            int capacity = 0;
+            for (int i = 0; i < parkingLots.length; i++) {
+                capacity += reader.readInt();
+                ParkingLot parkingLot = newParkingLot(capacity, reader.readInt());
+                int waitingCount = reader.readInt();
+                int readyCount = reader.readInt();
+                readTrucks(parkingLot, waitingCount, readyCount, reader);
+                parkingLot.setOccupiedCapacity(waitingCount + readyCount);
+                parkingLots[i] = parkingLot;
+            }
+            bulkLoad(parkingLots);
+            publish();
+            return reader.getCommandCount();
+        }
+    }
+
+    // Writes the id, capacity and load of the lot's waiting and then ready trucks in queue order.
+    void writeTrucks(ParkingLot parkingLot, Checkpoint.Writer writer) throws IOException {
+        for (Truck truck : parkingLot.waiting.toArray()) {
+            writeTruck(truck, writer);
+        }
+        for (Truck truck : parkingLot.ready.toArray()) {
+            writeTruck(truck, writer);
+        }
+    }
+
+    private void writeTruck(Truck truck, Checkpoint.Writer writer) throws IOException {
+        writer.writeInt(truck.getId());
+        writer.writeInt(truck.getCapacity());
+        writer.writeInt(truck.getLoad());
+    }
+
+    // Reads the trucks writeTrucks wrote back into the lot's queues.
+    void readTrucks(ParkingLot parkingLot, int waitingCount, int readyCount, Checkpoint.Reader reader)
+            throws IOException {
+        for (int i = 0; i < waitingCount + readyCount; i++) {
+            Truck truck = new Truck(reader.readInt(), reader.readInt());
+            truck.setLoad(reader.readInt());
+            truck.setInLot(parkingLot);
+            if (i < waitingCount) {
+                parkingLot.waiting.enqueue(truck);
+            } else {
+                parkingLot.ready.enqueue(truck);
+            }
+        }
+    }
+
+
+    // Inserts many ParkingLots at once. Same result as inserting them one by one:
+    // a capacity that already exists, in the tree or earlier in the array, is ignored.
+    // Sorted lots are built into a perfectly balanced tree in linear time, unsorted ones are sorted first.
+    // A small batch is inserted one by one, a big one is merged with the tree and the whole tree is rebuilt.
+    public void bulkLoad(ParkingLot[] parkingLots) {
+        ParkingLot[] sorted = sortedUnique(parkingLots);
+        if (sorted.length == 0) {
+            return;
+        }
+
+        if (root != null && (long) sorted.length * root.height < size) {
+            for (ParkingLot parkingLot : sorted) {
+                insert(parkingLot);
+            }
+            return;
+        }
+
+        ParkingLot[] merged = sorted;
+        if (root != null) {
+            Node[] nodes = new Node[size];
+            collectInOrder(root, nodes, 0);
+            ParkingLot[] existing = new ParkingLot[size];
+            for (int i = 0; i < size; i++) {
+                existing[i] = nodes[i].parkingLot;
+            }
+            merged = mergeSorted(existing, sorted);
+        }
+        root = buildBalanced(merged, 0, merged.length, null);
+        size = merged.length;
+        if (persistent) {
+            nextVersion = LotSnapshot.build(merged, 0, merged.length);
+        }
+        ParkingMetrics.recordTreeHeight(root.height);
+    }
+
+    // Returns the lots in increasing capacity order, keeping the first one of each capacity.
+    private ParkingLot[] sortedUnique(ParkingLot[] parkingLots) {
+        boolean strictlyIncreasing = true;
+        for (int i = 1; i < parkingLots.length && strictlyIncreasing; i++) {
+            strictlyIncreasing = parkingLots[i - 1].getCapacity() < parkingLots[i].getCapacity();
+        }
+        if (strictlyIncreasing) {
+            return parkingLots;
+        }
+
+        // The sort is stable, so the first lot of a capacity stays in front of its duplicates.
+        ParkingLot[] sorted = parkingLots.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(ParkingLot::getCapacity));
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (unique == 0 || sorted[unique - 1].getCapacity() != sorted[i].getCapacity()) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+
+    // Merges two sorted arrays. On equal capacities the existing lot wins.
+    private ParkingLot[] mergeSorted(ParkingLot[] existing, ParkingLot[] added) {
+        ParkingLot[] merged = new ParkingLot[existing.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < existing.length && j < added.length) {
+            int existingCapacity = existing[i].getCapacity();
+            int addedCapacity = added[j].getCapacity();
+            if (existingCapacity < addedCapacity) {
+                merged[k++] = existing[i++];
+            } else if (existingCapacity > addedCapacity) {
+                merged[k++] = added[j++];
+            } else {
+                merged[k++] = existing[i++];
+                j++;
+            }
+        }
+        while (i < existing.length) {
+            merged[k++] = existing[i++];
+        }
+        while (j < added.length) {
+            merged[k++] = added[j++];
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    private int collectInOrder(Node node, Node[] nodes, int index) {
+        if (node == null) {
+            return index;
+        }
+        index = collectInOrder(node.left, nodes, index);
+        nodes[index++] = node;
+        return collectInOrder(node.right, nodes, index);
+    }
+
+    // Recomputes the aggregates of every node in the subtree, children first.
+    private void updateSubtree(Node node) {
+        if (node == null) {
+            return;
+        }
+        updateSubtree(node.left);
+        updateSubtree(node.right);
+        updateNode(node);
+    }
+
+    // Builds a perfectly balanced subtree from the sorted lots in [from, to).
+    private Node buildBalanced(ParkingLot[] parkingLots, int from, int to, Node parent) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node node = new Node(parkingLots[middle]);
+        node.parent = parent;
+        node.left = buildBalanced(parkingLots, from, middle, node);
+        node.right = buildBalanced(parkingLots, middle + 1, to, node);
+        updateNode(node);
+        return node;
+    }
+
+
+    //inserts a ParkingLot to the avl tree.
+    public void insert(ParkingLot parkingLot) {
+        // If tree is empty create root node.
+        if (root == null) {
+            root = new Node(parkingLot);
+            size = 1;
+            stage(parkingLot);
+            ParkingMetrics.recordTreeHeight(1);
+            return;
+        }
+
+        Node current = root;
+        Node parent = null;
+
+        // Find the correct position to insert starting from the root.
+        while (current != null) {
+            parent = current;
+            if (parkingLot.getCapacity() < current.parkingLot.getCapacity()) {
+                current = current.left;
+            } else if (parkingLot.getCapacity() > current.parkingLot.getCapacity()) {
+                current = current.right;
+            } else {
+                // Duplicate capacity value
+                return;
+            }
+        }
+
+        Node newNode = new Node(parkingLot);
+        newNode.parent = parent;
+        size++;
+        stage(parkingLot);
+
+        // Link the parent to the new node
+        if (parkingLot.getCapacity() < parent.parkingLot.getCapacity()) {
+            parent.left = newNode;
+        } else {
+            parent.right = newNode;
+        }
+
+        rebalanceAfterInsertion(newNode);
+        ParkingMetrics.recordTreeHeight(root.height);
+    }
+
+
+    // Rebalances the tree.
+    private void rebalanceAfterInsertion(Node node) {
+        Node current = node;
+
+        while (current != null) {
+
+            updateNode(current);
+
+            // Calculate balance factor
+            int balance = getBalance(current);
+
+            // Perform rotations based on balance factor and node positions
+            if (balance > 1 && node.parkingLot.getCapacity() < current.left.parkingLot.getCapacity()) {
+                // Left left case
+                current = rightRotate(current);
+                ParkingMetrics.recordInsertRotations(1);
+            }
+            else if (balance < -1 && node.parkingLot.getCapacity() > current.right.parkingLot.getCapacity()) {
+                // Right right case
+                current = leftRotate(current);
+                ParkingMetrics.recordInsertRotations(1);
+            }
+            else if (balance > 1 && node.parkingLot.getCapacity() > current.left.parkingLot.getCapacity()) {
+                // Left right case
+                current.left = leftRotate(current.left);
+                current = rightRotate(current);
+                ParkingMetrics.recordInsertRotations(2);
+            }
+            else if (balance < -1 && node.parkingLot.getCapacity() < current.right.parkingLot.getCapacity()) {
+                // Right left case
+                current.right = rightRotate(current.right);
+                current = leftRotate(current);
+                ParkingMetrics.recordInsertRotations(2);
+            }
+
+            // Move up to parent for next iteration
+            current = current.parent;
+        }
+    }
+
+
+    // Distributes load.
+    public String load(int capacity, int loadAmount) {
+        ByteResultSink sink = new ByteResultSink(64);
+        load(capacity, loadAmount, sink);
+        return sink.toString();
+    }
+
+    // Distributes load, writing the moved trucks straight into the sink.
+    // The ready lots are swept once in increasing capacity. The trucks a lot gives are all filled and
+    // taken out first, then added back in order, which places them exactly as taking them out one by one:
+    // the lot a truck just left always has room for it either way.
+    public void load(int capacity, int loadAmount, ResultSink sink) {
+        loadPlan.run(loadLots, capacity, loadAmount, sink);
+        publish();
+    }
+
+    // The lots a load walks, through loadCursor.
+    private final class TreeLoadLots implements LoadLots {
+        @Override
+        public boolean seekReady(int capacity) {
+            // Lots smaller than the current one never get ready trucks back during a load,
+            // so the cursor only has to walk forward from the first lot.
+            if (loadCursor.seekCeiling(capacity) && !AVLTree.this.hasReady(loadCursor.getParkingLot())) {
+                loadCursor.nextWithReady();
+            }
+            return loadCursor.isValid();
+        }
+
+        @Override
+        public boolean nextReady() {
+            loadCursor.nextWithReady();
+            return loadCursor.isValid();
+        }
+
+        @Override
+        public int lotCapacity() {
+            return loadCursor.getParkingLot().getCapacity();
+        }
+
+        @Override
+        public boolean hasReady() {
+            return AVLTree.this.hasReady(loadCursor.getParkingLot());
+        }
+
+        @Override
+        public int readyCapacity() {
+            return AVLTree.this.readyCapacity(loadCursor.getParkingLot());
+        }
+
+        @Override
+        public int readyLoad() {
+            return AVLTree.this.readyLoad(loadCursor.getParkingLot());
+        }
+
+        @Override
+        public void takeReady(int load, LoadPlan plan) {
+            AVLTree.this.takeReady(loadCursor.getParkingLot(), load, plan);
+        }
+
+        @Override
+        public void tookReady(int count) {
+            ParkingLot lotChosen = loadCursor.getParkingLot();
+            lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() - count);
+            updatePath(loadCursor.getNode());
+        }
+
+        @Override
+        public void place(LoadPlan plan) {
+            placeFilledTrucks(plan);
+        }
+    }
+
+    // Capacity and load of the first ready truck of the lot.
+    int readyCapacity(ParkingLot parkingLot) {
+        return parkingLot.ready.peek().getCapacity();
+    }
+
+    int readyLoad(ParkingLot parkingLot) {
+        return parkingLot.ready.peek().getLoad();
+    }
+
+    // Takes the first ready truck out of the lot with its new load and adds it to the plan.
+    void takeReady(ParkingLot parkingLot, int load, LoadPlan plan) {
+        Truck truck = parkingLot.ready.dequeue();
+        truck.setLoad(load);
+        plan.addTruck(truck, truck.getCapacity() - load);
+    }
+
+    // Adds the planned trucks back in order, like reAdd_truck, and sets their destinations.
+    // While they are placed a path is only updated when its lot fills up, as that is all the searches
+    // look at. Every other lot that got trucks has its path updated once at the end.
+    private void placeFilledTrucks(LoadPlan plan) {
+        for (int i = 0; i < plan.count; i++) {
+            int space = plan.spaces[i];
+            Node node = plan.lotFor(space);
+            if (!plan.knows(space) || (node != null && !isNotFull(node.parkingLot))) {
+                node = bestFitNode(space);
+                plan.remember(space, node);
+                if (node != null) {
+                    plan.touch(node);
+                }
+            }
+
+            if (node == null) {
+                plan.destinations[i] = -1;
+                dropFilledTruck(plan, i);
+                continue;
+            }
+            ParkingLot lotChosen = node.parkingLot;
+            placeFilledTruck(plan, i, lotChosen);
+            plan.destinations[i] = lotChosen.getCapacity();
+            if (!isNotFull(lotChosen)) {
+                updatePath(node);
+            }
+        }
+
+        for (int i = 0; i < plan.touchedCount(); i++) {
+            Node node = plan.touched(i);
+            if (isNotFull(node.parkingLot)) {
+                updatePath(node);
+            }
+        }
+        plan.clearTouched();
+    }
+
+    // Puts the i-th truck of the plan into the lot's waiting section.
+    void placeFilledTruck(LoadPlan plan, int i, ParkingLot lotChosen) {
+        Truck truck = plan.trucks[i];
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waiting.enqueue(truck);
+        truck.setInLot(lotChosen);
+    }
+
+    // Called for a planned truck that found no lot and leaves the system.
+    void dropFilledTruck(LoadPlan plan, int i) {
+    }
+
+    // Finds the lot a truck of the given capacity goes to, or null if there is none.
+    Node bestFitNode(int capacity) {
+        // The best fit is the lot with the same capacity, otherwise the biggest smaller one.
+        // If it is full move on to the next smaller lot that is not.
+        boolean fellBack = searchCursor.seekFloor(capacity) && !isNotFull(searchCursor.getParkingLot());
+        if (fellBack) {
+            searchCursor.previousNotFull();
+        }
+        recordFallback(ParkingMetrics.NOT_FULL, fellBack);
+        return searchCursor.getNode();
+    }
+
+    // Finds the lot ready takes a truck from, or null if there is none.
+    Node waitingNode(int capacity) {
+        // If the lot is not found or it has no element in the waiting section, move on to the next one.
+        boolean fellBack = searchCursor.seekCeiling(capacity) && !hasWaiting(searchCursor.getParkingLot());
+        if (fellBack) {
+            searchCursor.nextWithWaiting();
+        }
+        recordFallback(ParkingMetrics.WAITING, fellBack);
+        return searchCursor.getNode();
+    }
+
+    // Adds the truck back, returns the ParkingLot's capacity, if non-existent returns null.
+    public int reAdd_truck(Truck truck) {
+
+        int space = truck.getCapacity() - truck.getLoad();
+
+        Node node = bestFitNode(space);
+
+        // If there is no available ParkingLot.
+        if (node == null) {
+            return -1;
+
+        } else {
+            ParkingLot lotChosen = node.parkingLot;
+
+            // Found the ParkingLot now add the truck.
+            lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+            lotChosen.waiting.enqueue(truck);
+            truck.setInLot(lotChosen);
+            updatePath(node);
+            return lotChosen.getCapacity();
+        }
+    }
+
+
+    public String add_truck(int truck_id, int capacity) {
+        ByteResultSink sink = new ByteResultSink(16);
+        add_truck(truck_id, capacity, sink);
+        return sink.toString();
+    }
+
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        network.add_truck(truck_id, capacity, sink);
+        publish();
+    }
+
+    // Adds a run of trucks, writing one line per truck like add_truck.
+    public void add_trucks(int[] truck_ids, int[] capacities, int from, int count, ResultSink sink) {
+        int[] placements = new int[count];
+        addTrucks(truck_ids, capacities, from, count, placements);
+        for (int i = 0; i < count; i++) {
+            sink.writeInt(placements[i]);
+            sink.endLine();
+        }
+    }
+
+    // Adds the trucks in order and returns the capacity of the lot each one went to, or -1.
+    public int[] addTrucks(int[] truck_ids, int[] capacities) {
+        int[] placements = new int[truck_ids.length];
+        addTrucks(truck_ids, capacities, 0, truck_ids.length, placements);
+        return placements;
+    }
+
+    // Adds count trucks starting at index from, in order, with the same placements as add_truck.
+    // A big run is placed with one merged walk: the trucks are sorted by capacity and merged
+    // against the lots in order to find each one's best fit, then placed in arrival order with a
+    // union-find that points every full lot to the next smaller one that is not full.
+    public void addTrucks(int[] truck_ids, int[] capacities, int from, int count, int[] placements) {
+        // A small run is cheaper one by one than a walk over all lots.
+        if (root == null || (long) count * root.height < size) {
+            for (int i = 0; i < count; i++) {
+                Node node = bestFitNode(capacities[from + i]);
+                if (node == null) {
+                    placements[i] = -1;
+                    ParkingMetrics.recordMiss(Commands.ADD_TRUCK);
+                } else {
+                    placeNewTruck(node.parkingLot, truck_ids[from + i], capacities[from + i]);
+                    updatePath(node);
+                    placements[i] = node.parkingLot.getCapacity();
+                }
+            }
+            publish();
+            return;
+        }
+
+        Node[] nodes = new Node[size];
+        collectInOrder(root, nodes, 0);
+
+        // Sort the trucks by capacity, keeping their position in the low bits.
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) capacities[from + i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        // Merge to find the index of the biggest lot with a capacity not above each truck's, or -1.
+        int[] bestFit = new int[count];
+        int lot = -1;
+        for (long entry : order) {
+            int capacity = (int) (entry >> 32);
+            while (lot + 1 < nodes.length && nodes[lot + 1].parkingLot.getCapacity() <= capacity) {
+                lot++;
+            }
+            bestFit[(int) entry] = lot;
+        }
+
+        // nextFree[i + 1] leads to the biggest lot at index i or below that is not full, 0 if there is none.
+        int[] nextFree = new int[nodes.length + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            if (isNotFull(nodes[i].parkingLot)) {
+                nextFree[i + 1] = i + 1;
+            } else {
+                nextFree[i + 1] = i;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int found = findFree(nextFree, bestFit[i] + 1);
+            if (found == 0) {
+                placements[i] = -1;
+                ParkingMetrics.recordMiss(Commands.ADD_TRUCK);
+                continue;
+            }
+
+            ParkingLot lotChosen = nodes[found - 1].parkingLot;
+            placeNewTruck(lotChosen, truck_ids[from + i], capacities[from + i]);
+            placements[i] = lotChosen.getCapacity();
+            stage(lotChosen);
+            if (!isNotFull(lotChosen)) {
+                nextFree[found] = found - 1;
+            }
+        }
+
+        updateSubtree(root);
+        publish();
+    }
+
+    // Follows the union-find links to the root, compressing the path on the way back.
+    private int findFree(int[] nextFree, int index) {
+        int found = index;
+        while (nextFree[found] != found) {
+            found = nextFree[found];
+        }
+        while (nextFree[index] != found) {
+            int next = nextFree[index];
+            nextFree[index] = found;
+            index = next;
+        }
+        return found;
+    }
+
+    // Adds a new truck to the lot's waiting section. The caller updates the aggregates.
+    void placeNewTruck(ParkingLot lotChosen, int truck_id, int capacity) {
+        Truck truck = new Truck(truck_id, capacity);
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waiting.enqueue(truck);
+        truck.setInLot(lotChosen);
+    }
+
+    // Finds the ParkingLot that has the capacity.
+    // If not found moves to the smallest larger capacity ParkingLot.
+    // Moves the first waiting truck to the ready section.
+    public String ready(int capacity) {
+        ByteResultSink sink = new ByteResultSink(32);
+        ready(capacity, sink);
+        return sink.toString();
+    }
+
+    public void ready(int capacity, ResultSink sink) {
+        network.ready(capacity, sink);
+        publish();
+    }
+
+
+    // finds and deletes the node with the given capacity.
+    public void delete(int capacity) {
+        if (root == null) {
+            return;
+        }
+
+        // Find the node to delete
+        Node nodeToDelete = root;
+        while (nodeToDelete != null && nodeToDelete.parkingLot.getCapacity() != capacity) {
+            if (capacity < nodeToDelete.parkingLot.getCapacity()) {
+                nodeToDelete = nodeToDelete.left;
+            } else {
+                nodeToDelete = nodeToDelete.right;
+            }
+        }
+
+        if (nodeToDelete == null) {
+            return; // Node not found
+        }
+        size--;
+        if (persistent) {
+            nextVersion = LotSnapshot.remove(nextVersion, capacity);
+        }
+
+        // Store parent before deletion for rebalancing
+        Node parentBeforeDeletion = nodeToDelete.parent;
+
+        // If node to delete has no children or one child.
+        if (nodeToDelete.left == null || nodeToDelete.right == null) {
+
+            Node newChild;
+            if (nodeToDelete.left != null) {
+                newChild = nodeToDelete.left;
+
+            } else {
+                newChild = nodeToDelete.right;
+            }
+
+            if (newChild != null) {
+                newChild.parent = nodeToDelete.parent;
+            }
+
+            // If it has no parents it should be the root.
+            if (nodeToDelete.parent == null) {
+                root = newChild;
+            } else {
+                if (nodeToDelete.parent.left == nodeToDelete) {
+                    nodeToDelete.parent.left = newChild;
+                } else {
+                    nodeToDelete.parent.right = newChild;
+                }
+            }
+        }
+        // If node to delete has two children.
+        else {
+            // Finds the minimum value in right subtree.
+            Node nextMin = findMin(nodeToDelete.right);
+
+            // Store parent of successor for rebalancing.
+            parentBeforeDeletion = nextMin.parent;
+
+            nodeToDelete.parkingLot = nextMin.parkingLot;
+
+            // Remove successor
+            if (nextMin.parent == nodeToDelete) {
+                nodeToDelete.right = nextMin.right;
+                if (nextMin.right != null) {
+                    nextMin.right.parent = nodeToDelete;
+                }
+            } else {
+                nextMin.parent.left = nextMin.right;
+                if (nextMin.right != null) {
+                    nextMin.right.parent = nextMin.parent;
+                }
+            }
+        }
+
+        // Rebalance the tree.
+        Node node = parentBeforeDeletion;
+        while (node != null) {
+            updateNode(node);
+
+            int balance = getBalance(node);
+
+            // Left left case
+            if (balance > 1 && getBalance(node.left) >= 0) {
+                ParkingMetrics.recordDeleteRotations(1);
+                if (node == root) {
+                    root = rightRotate(node);
+                } else {
+                    rightRotate(node);
+                }
+            }
+
+            // Right right case
+            if (balance < -1 && getBalance(node.right) <= 0) {
+                ParkingMetrics.recordDeleteRotations(1);
+                if (node == root) {
+                    root = leftRotate(node);
+                } else {
+                    leftRotate(node);
+                }
+            }
+
+            // Left right case
+            if (balance > 1 && getBalance(node.left) < 0) {
+                ParkingMetrics.recordDeleteRotations(2);
+                node.left = leftRotate(node.left);
+                if (node == root) {
+                    root = rightRotate(node);
+                } else {
+                    rightRotate(node);
+                }
+            }
+
+            // Right left case
+            if (balance < -1 && getBalance(node.right) > 0) {
+                ParkingMetrics.recordDeleteRotations(2);
+                node.right = rightRotate(node.right);
+                if (node == root) {
+                    root = leftRotate(node);
+                } else {
+                    leftRotate(node);
+                }
+            }
+
+            node = node.parent;
+        }
+        ParkingMetrics.recordTreeHeight((root == null) ? 0 : root.height);
+    }
+
+
+    // Removes the lot and moves its trucks into the smaller lots, see ParkingEngine.delete_parking_lot.
+    // Instead of a best-fit search per truck, rehome moves the trucks in one walk down the smaller lots
+    // that fills each lot up to its limit, for O(log N + trucks + lots passed).
+    public void delete_parking_lot(int capacity) {
+        network.delete_parking_lot(capacity);
+        publish();
+    }
+
+    // Deletes the lot with the given capacity and returns it with its trucks, or null if there is none.
+    public ParkingLot remove(int capacity) {
+        if (!searchCursor.seekCeiling(capacity) || searchCursor.getParkingLot().getCapacity() != capacity) {
+            return null;
+        }
+        ParkingLot removed = searchCursor.getParkingLot();
+        delete(capacity);
+        return removed;
+    }
+
+    // Moves the trucks of a removed lot into the lots below the given capacity, as many as fit.
+    // The others stay in the removed lot.
+    void rehomeTrucks(ParkingLot removed, int below) {
+        boolean found = searchCursor.seekLower(below);
+        if (found && !isNotFull(searchCursor.getParkingLot())) {
+            found = searchCursor.previousNotFullUpdating();
+        }
+
+        while (found && removed.getWaitingCount() + removed.getReadyCount() != 0) {
+            ParkingLot lotChosen = searchCursor.getParkingLot();
+            moveTruck(removed, lotChosen);
+            if (!isNotFull(lotChosen)) {
+                stage(lotChosen);
+                found = searchCursor.previousNotFullUpdating();
+            }
+        }
+
+        // The walk updated every node it climbed out of, the path above the last lot is left.
+        if (found) {
+            updatePath(searchCursor.getNode());
+        }
+    }
+
+    // Moves the first waiting truck of a removed lot, or its first ready one if none is waiting,
+    // into the same section of another lot. The caller updates the aggregates.
+    void moveTruck(ParkingLot from, ParkingLot to) {
+        Truck truck;
+        if (from.waiting.size != 0) {
+            truck = from.waiting.dequeue();
+            to.waiting.enqueue(truck);
+        } else {
+            truck = from.ready.dequeue();
+            to.ready.enqueue(truck);
+        }
+        truck.setInLot(to);
+        to.setOccupiedCapacity(to.getOccupiedCapacity() + 1);
+    }
+
+    // Lets go of the trucks left in a removed lot. Truck objects need nothing, the GC takes them.
+    void dropTrucks(ParkingLot removed) {
+    }
+
+    // Count the trucks in the ParkingLots with a higher capacity.
+    // Uses the subtree truck counts, so only one root to leaf path is visited.
+    public String count(int capacity) {
+        return Integer.toString(countAbove(capacity));
+    }
+
+    public void count(int capacity, ResultSink sink) {
+        sink.writeInt(countAbove(capacity));
+    }
+
+
+    // Count the trucks in the ParkingLots with a capacity between low and high, both inclusive.
+    public String count_range(int low, int high) {
+        return Integer.toString(countRange(low, high));
+    }
+
+    public void count_range(int low, int high, ResultSink sink) {
+        sink.writeInt(countRange(low, high));
+    }
+
+    // Returns the number of trucks in the ParkingLots with a capacity strictly greater than the given one.
+    public int countAbove(int capacity) {
+        int totalCount = 0;
+        Node node = root;
+
+        while (node != null) {
+            if (node.parkingLot.getCapacity() > capacity) {
+                // This lot and its whole right subtree are above the capacity.
+                totalCount = totalCount + node.parkingLot.getOccupiedCapacity() + getSubtreeTrucks(node.right);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return totalCount;
+    }
+
+    public int totalTrucks() {
+        return getSubtreeTrucks(root);
+    }
+
+
+    // A new version of the recursive inorder traversal where it doesn't go to the left child if:
+    // the current node has a larger capacity.
+    public ArrayList<ParkingLot> inOrderModified(int capacity) {
+        ArrayList<ParkingLot> arrayList = new ArrayList<>();
+        return inOrderModified(root, capacity, arrayList);
+    }
+
+    private ArrayList<ParkingLot> inOrderModified(Node node, int capacity, ArrayList<ParkingLot> arrayList) {
+        if (node != null) {
+            if (node.parkingLot.getCapacity() > capacity) {
+                inOrderModified(node.left, capacity, arrayList);
+            }
+            arrayList.add(node.parkingLot);
+
+            inOrderModified(node.right, capacity, arrayList);
+        }
+        return arrayList;
+    }
+}
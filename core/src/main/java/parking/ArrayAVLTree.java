@@ -0,0 +1,617 @@
+package parking;
+
+/**
+ * An AVL tree engine that keeps its nodes in a NodeStore instead of Node objects.
+ * Nodes are int indices with int child and parent links, so a descent reads packed primitive
+ * arrays (or an off-heap buffer) instead of chasing object references.
+ * Trucks live in a TruckStore, queued per lot in IntRingQueues indexed by node.
+ * Gives the same outputs as AVLTree for every command.
+ */
+public class ArrayAVLTree implements ParkingEngine, TruckCounts {
+    private static final int NIL = NodeStore.NIL;
+
+    // Bits of the subtree aggregate flags.
+    private static final int FREE = 1;
+    private static final int WAITING = 2;
+    private static final int READY = 4;
+
+    private final NodeStore nodes;
+    private final TruckStore trucks = new TruckStore();
+    private IntRingQueue[] waiting = new IntRingQueue[16];
+    private IntRingQueue[] ready = new IntRingQueue[16];
+    private int root = NIL;
+    private final LoadPlan loadPlan = new LoadPlan();
+    private final LoadLots loadLots = new ArrayLoadLots();
+
+
+    public ArrayAVLTree() {
+        this(false);
+    }
+
+    // With offHeap the nodes are stored in a direct ByteBuffer.
+    public ArrayAVLTree(boolean offHeap) {
+        if (offHeap) {
+            nodes = new DirectNodeStore(1024);
+        } else {
+            nodes = new HeapNodeStore(1024);
+        }
+    }
+
+
+    public int getHeight() {
+        return height(root);
+    }
+
+
+    // Aggregate helpers, NIL is an empty subtree.
+
+    private int height(int node) {
+        if (node == NIL) {
+            return 0;
+        }
+        return nodes.getHeight(node);
+    }
+
+    private int subtreeTrucks(int node) {
+        if (node == NIL) {
+            return 0;
+        }
+        return nodes.getSubtreeTrucks(node);
+    }
+
+    private boolean subtreeHas(int node, int flag) {
+        if (node == NIL) {
+            return false;
+        }
+        return (nodes.getFlags(node) & flag) != 0;
+    }
+
+    private int lotFlags(int node) {
+        int flags = 0;
+        if (nodes.getOccupied(node) != nodes.getTruckLimit(node)) {
+            flags = flags | FREE;
+        }
+        if (waiting[node].size() != 0) {
+            flags = flags | WAITING;
+        }
+        if (ready[node].size() != 0) {
+            flags = flags | READY;
+        }
+        return flags;
+    }
+
+    private boolean lotHas(int node, int flag) {
+        return (lotFlags(node) & flag) != 0;
+    }
+
+    private int balance(int node) {
+        return height(nodes.getLeft(node)) - height(nodes.getRight(node));
+    }
+
+    // Updates the height and the subtree aggregates of a node based on its children.
+    private void update(int node) {
+        int left = nodes.getLeft(node);
+        int right = nodes.getRight(node);
+        nodes.setHeight(node, Math.max(height(left), height(right)) + 1);
+        nodes.setSubtreeTrucks(node, subtreeTrucks(left) + nodes.getOccupied(node) + subtreeTrucks(right));
+        int leftFlags = (left == NIL) ? 0 : nodes.getFlags(left);
+        int rightFlags = (right == NIL) ? 0 : nodes.getFlags(right);
+        nodes.setFlags(node, leftFlags | lotFlags(node) | rightFlags);
+    }
+
+    // Updates the given node and all of its ancestors after a lot's occupancy changed.
+    private void updatePath(int node) {
+        while (node != NIL) {
+            update(node);
+            node = nodes.getParent(node);
+        }
+    }
+
+
+    // Rotations. Both return the new root of the rotated subtree.
+
+    private int rightRotate(int node) {
+        int leftern = nodes.getLeft(node);
+        int lefternRightern = nodes.getRight(leftern);
+
+        replaceChild(nodes.getParent(node), node, leftern);
+        nodes.setRight(leftern, node);
+        nodes.setParent(node, leftern);
+        nodes.setLeft(node, lefternRightern);
+        if (lefternRightern != NIL) {
+            nodes.setParent(lefternRightern, node);
+        }
+
+        update(node);
+        update(leftern);
+        return leftern;
+    }
+
+    private int leftRotate(int node) {
+        int rightern = nodes.getRight(node);
+        int rightenLeftern = nodes.getLeft(rightern);
+
+        replaceChild(nodes.getParent(node), node, rightern);
+        nodes.setLeft(rightern, node);
+        nodes.setParent(node, rightern);
+        nodes.setRight(node, rightenLeftern);
+        if (rightenLeftern != NIL) {
+            nodes.setParent(rightenLeftern, node);
+        }
+
+        update(node);
+        update(rightern);
+        return rightern;
+    }
+
+    // Links newChild where oldChild was below parent, or makes it the root.
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (newChild != NIL) {
+            nodes.setParent(newChild, parent);
+        }
+        if (parent == NIL) {
+            root = newChild;
+        } else if (nodes.getLeft(parent) == oldChild) {
+            nodes.setLeft(parent, newChild);
+        } else {
+            nodes.setRight(parent, newChild);
+        }
+    }
+
+    // Walks from the node up to the root, updating and rotating where the balance is off.
+    private void rebalance(int node) {
+        while (node != NIL) {
+            update(node);
+            int balance = balance(node);
+            if (balance > 1) {
+                if (balance(nodes.getLeft(node)) < 0) {
+                    leftRotate(nodes.getLeft(node));
+                }
+                node = rightRotate(node);
+            } else if (balance < -1) {
+                if (balance(nodes.getRight(node)) > 0) {
+                    rightRotate(nodes.getRight(node));
+                }
+                node = leftRotate(node);
+            }
+            node = nodes.getParent(node);
+        }
+    }
+
+
+    @Override
+    public void create_parking_lot(int capacity, int truckLimit) {
+        if (root == NIL) {
+            root = newNode(capacity, truckLimit, NIL);
+            return;
+        }
+
+        int current = root;
+        int parent = NIL;
+        while (current != NIL) {
+            parent = current;
+            if (capacity < nodes.getCapacity(current)) {
+                current = nodes.getLeft(current);
+            } else if (capacity > nodes.getCapacity(current)) {
+                current = nodes.getRight(current);
+            } else {
+                // Duplicate capacity value
+                return;
+            }
+        }
+
+        int node = newNode(capacity, truckLimit, parent);
+        if (capacity < nodes.getCapacity(parent)) {
+            nodes.setLeft(parent, node);
+        } else {
+            nodes.setRight(parent, node);
+        }
+        rebalance(parent);
+    }
+
+    private int newNode(int capacity, int truckLimit, int parent) {
+        int node = nodes.allocate();
+        if (node >= waiting.length) {
+            growQueues();
+        }
+        if (waiting[node] == null) {
+            waiting[node] = new IntRingQueue();
+            ready[node] = new IntRingQueue();
+        }
+
+        nodes.setCapacity(node, capacity);
+        nodes.setTruckLimit(node, truckLimit);
+        nodes.setOccupied(node, 0);
+        nodes.setLeft(node, NIL);
+        nodes.setRight(node, NIL);
+        nodes.setParent(node, parent);
+        update(node);
+        return node;
+    }
+
+    private void growQueues() {
+        IntRingQueue[] biggerWaiting = new IntRingQueue[waiting.length * 2];
+        IntRingQueue[] biggerReady = new IntRingQueue[ready.length * 2];
+        System.arraycopy(waiting, 0, biggerWaiting, 0, waiting.length);
+        System.arraycopy(ready, 0, biggerReady, 0, ready.length);
+        waiting = biggerWaiting;
+        ready = biggerReady;
+    }
+
+
+    // Removes the lot and drops its trucks, like AVLTree.delete.
+    @Override
+    public void delete(int capacity) {
+        int node = root;
+        while (node != NIL && nodes.getCapacity(node) != capacity) {
+            if (capacity < nodes.getCapacity(node)) {
+                node = nodes.getLeft(node);
+            } else {
+                node = nodes.getRight(node);
+            }
+        }
+        if (node == NIL) {
+            return;
+        }
+
+        // With two children the successor's lot moves into this node and the successor is removed instead.
+        if (nodes.getLeft(node) != NIL && nodes.getRight(node) != NIL) {
+            int successor = nodes.getRight(node);
+            while (nodes.getLeft(successor) != NIL) {
+                successor = nodes.getLeft(successor);
+            }
+            moveLot(successor, node);
+            node = successor;
+        }
+
+        freeTrucks(waiting[node]);
+        freeTrucks(ready[node]);
+
+        int child = nodes.getLeft(node);
+        if (child == NIL) {
+            child = nodes.getRight(node);
+        }
+        int parent = nodes.getParent(node);
+        replaceChild(parent, node, child);
+        nodes.free(node);
+        rebalance(parent);
+    }
+
+    // Removes the lot and moves its trucks into the smaller lots in one walk, like AVLTree.delete_parking_lot.
+    @Override
+    public void delete_parking_lot(int capacity) {
+        int node = root;
+        while (node != NIL && nodes.getCapacity(node) != capacity) {
+            if (capacity < nodes.getCapacity(node)) {
+                node = nodes.getLeft(node);
+            } else {
+                node = nodes.getRight(node);
+            }
+        }
+        if (node == NIL) {
+            return;
+        }
+
+        // The trucks are taken out first, as delete may move another lot's queues into this node.
+        IntRingQueue removedWaiting = waiting[node];
+        IntRingQueue removedReady = ready[node];
+        waiting[node] = new IntRingQueue();
+        ready[node] = new IntRingQueue();
+        delete(capacity);
+
+        int target = bestFitNode(capacity - 1);
+        while (target != NIL && removedWaiting.size() + removedReady.size() != 0) {
+            int slot;
+            if (removedWaiting.size() != 0) {
+                slot = removedWaiting.dequeue();
+                waiting[target].enqueue(slot);
+            } else {
+                slot = removedReady.dequeue();
+                ready[target].enqueue(slot);
+            }
+            trucks.setLotCapacity(slot, nodes.getCapacity(target));
+            nodes.setOccupied(target, nodes.getOccupied(target) + 1);
+            if (!lotHas(target, FREE)) {
+                target = previousFreeUpdating(target);
+            }
+        }
+        if (target != NIL) {
+            updatePath(target);
+        }
+        freeTrucks(removedWaiting);
+        freeTrucks(removedReady);
+    }
+
+    // Like previousMatching(node, FREE), for a walk that fills the lots it passes. Every node the walk
+    // climbs out of is updated, the subtrees below it hold no filled lot and are up to date.
+    private int previousFreeUpdating(int node) {
+        int left = nodes.getLeft(node);
+        if (subtreeHas(left, FREE)) {
+            return lastMatching(left, FREE);
+        }
+        int parent = nodes.getParent(node);
+        while (parent != NIL) {
+            update(node);
+            if (nodes.getRight(parent) == node) {
+                if (lotHas(parent, FREE)) {
+                    return parent;
+                }
+                if (subtreeHas(nodes.getLeft(parent), FREE)) {
+                    return lastMatching(nodes.getLeft(parent), FREE);
+                }
+            }
+            node = parent;
+            parent = nodes.getParent(node);
+        }
+        update(node);
+        return NIL;
+    }
+
+    // Moves the lot of one node into another. The target's queues end up in the source node.
+    private void moveLot(int from, int to) {
+        nodes.setCapacity(to, nodes.getCapacity(from));
+        nodes.setTruckLimit(to, nodes.getTruckLimit(from));
+        nodes.setOccupied(to, nodes.getOccupied(from));
+
+        IntRingQueue swap = waiting[to];
+        waiting[to] = waiting[from];
+        waiting[from] = swap;
+        swap = ready[to];
+        ready[to] = ready[from];
+        ready[from] = swap;
+    }
+
+    private void freeTrucks(IntRingQueue queue) {
+        while (queue.size() != 0) {
+            trucks.free(queue.dequeue());
+        }
+    }
+
+
+    // Searches. They return NIL if there is no such lot.
+
+    // Finds the lot a truck of the given capacity goes to: the same capacity or the biggest
+    // smaller one, moving on to smaller lots while it is full.
+    private int bestFitNode(int capacity) {
+        int node = root;
+        int floor = NIL;
+        while (node != NIL) {
+            if (nodes.getCapacity(node) <= capacity) {
+                floor = node;
+                node = nodes.getRight(node);
+            } else {
+                node = nodes.getLeft(node);
+            }
+        }
+        if (floor != NIL && !lotHas(floor, FREE)) {
+            return previousMatching(floor, FREE);
+        }
+        return floor;
+    }
+
+    // Finds the smallest lot with at least the given capacity, moving on while it has no such trucks.
+    private int ceilingMatching(int capacity, int flag) {
+        int node = root;
+        int ceiling = NIL;
+        while (node != NIL) {
+            if (nodes.getCapacity(node) >= capacity) {
+                ceiling = node;
+                node = nodes.getLeft(node);
+            } else {
+                node = nodes.getRight(node);
+            }
+        }
+        if (ceiling != NIL && !lotHas(ceiling, flag)) {
+            return nextMatching(ceiling, flag);
+        }
+        return ceiling;
+    }
+
+    // Next bigger lot with the flag, walking over parent links and skipping subtrees without it.
+    private int nextMatching(int node, int flag) {
+        int right = nodes.getRight(node);
+        if (subtreeHas(right, flag)) {
+            return firstMatching(right, flag);
+        }
+        int parent = nodes.getParent(node);
+        while (parent != NIL) {
+            if (nodes.getLeft(parent) == node) {
+                if (lotHas(parent, flag)) {
+                    return parent;
+                }
+                if (subtreeHas(nodes.getRight(parent), flag)) {
+                    return firstMatching(nodes.getRight(parent), flag);
+                }
+            }
+            node = parent;
+            parent = nodes.getParent(node);
+        }
+        return NIL;
+    }
+
+    // Next smaller lot with the flag, walking over parent links and skipping subtrees without it.
+    private int previousMatching(int node, int flag) {
+        int left = nodes.getLeft(node);
+        if (subtreeHas(left, flag)) {
+            return lastMatching(left, flag);
+        }
+        int parent = nodes.getParent(node);
+        while (parent != NIL) {
+            if (nodes.getRight(parent) == node) {
+                if (lotHas(parent, flag)) {
+                    return parent;
+                }
+                if (subtreeHas(nodes.getLeft(parent), flag)) {
+                    return lastMatching(nodes.getLeft(parent), flag);
+                }
+            }
+            node = parent;
+            parent = nodes.getParent(node);
+        }
+        return NIL;
+    }
+
+    private int firstMatching(int node, int flag) {
+        while (true) {
+            if (subtreeHas(nodes.getLeft(node), flag)) {
+                node = nodes.getLeft(node);
+            } else if (lotHas(node, flag)) {
+                return node;
+            } else {
+                node = nodes.getRight(node);
+            }
+        }
+    }
+
+    private int lastMatching(int node, int flag) {
+        while (true) {
+            if (subtreeHas(nodes.getRight(node), flag)) {
+                node = nodes.getRight(node);
+            } else if (lotHas(node, flag)) {
+                return node;
+            } else {
+                node = nodes.getLeft(node);
+            }
+        }
+    }
+
+
+    // Commands.
+
+    @Override
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        int node = bestFitNode(capacity);
+        if (node == NIL) {
+            sink.writeInt(-1);
+        } else {
+            addToWaiting(node, trucks.allocate(truck_id, capacity));
+            sink.writeInt(nodes.getCapacity(node));
+        }
+    }
+
+    @Override
+    public void ready(int capacity, ResultSink sink) {
+        int node = ceilingMatching(capacity, WAITING);
+        if (node == NIL) {
+            sink.writeInt(-1);
+        } else {
+            int slot = waiting[node].dequeue();
+            ready[node].enqueue(slot);
+            updatePath(node);
+
+            sink.writeInt(trucks.getId(slot));
+            sink.writeInt(trucks.getLotCapacity(slot));
+        }
+    }
+
+    // Same distribution as AVLTree.load.
+    @Override
+    public void load(int capacity, int loadAmount, ResultSink sink) {
+        loadPlan.run(loadLots, capacity, loadAmount, sink);
+    }
+
+    // The lots a load walks, by node index.
+    private final class ArrayLoadLots implements LoadLots {
+        private int node = NIL;
+
+        @Override
+        public boolean seekReady(int capacity) {
+            node = ceilingMatching(capacity, READY);
+            return node != NIL;
+        }
+
+        @Override
+        public boolean nextReady() {
+            node = nextMatching(node, READY);
+            return node != NIL;
+        }
+
+        @Override
+        public int lotCapacity() {
+            return nodes.getCapacity(node);
+        }
+
+        @Override
+        public boolean hasReady() {
+            return ready[node].size() != 0;
+        }
+
+        @Override
+        public int readyCapacity() {
+            return trucks.getCapacity(ready[node].peek());
+        }
+
+        @Override
+        public int readyLoad() {
+            return trucks.getLoad(ready[node].peek());
+        }
+
+        @Override
+        public void takeReady(int load, LoadPlan plan) {
+            int slot = ready[node].dequeue();
+            trucks.setLoad(slot, load);
+            plan.addSlot(slot, trucks.getId(slot), trucks.getCapacity(slot) - load);
+        }
+
+        @Override
+        public void tookReady(int count) {
+            nodes.setOccupied(node, nodes.getOccupied(node) - count);
+            updatePath(node);
+        }
+
+        // Each truck goes back like reAdd_truck.
+        @Override
+        public void place(LoadPlan plan) {
+            for (int i = 0; i < plan.count; i++) {
+                plan.destinations[i] = reAddSlot(plan.slots[i]);
+            }
+        }
+    }
+
+    // Adds the truck in the slot back, returns the lot's capacity or -1.
+    private int reAddSlot(int slot) {
+        int node = bestFitNode(trucks.getCapacity(slot) - trucks.getLoad(slot));
+        if (node == NIL) {
+            trucks.free(slot);
+            return -1;
+        }
+        addToWaiting(node, slot);
+        return nodes.getCapacity(node);
+    }
+
+    private void addToWaiting(int node, int slot) {
+        nodes.setOccupied(node, nodes.getOccupied(node) + 1);
+        waiting[node].enqueue(slot);
+        trucks.setLotCapacity(slot, nodes.getCapacity(node));
+        updatePath(node);
+    }
+
+    @Override
+    public void count(int capacity, ResultSink sink) {
+        sink.writeInt(countAbove(capacity));
+    }
+
+    @Override
+    public void count_range(int low, int high, ResultSink sink) {
+        sink.writeInt(countRange(low, high));
+    }
+
+    // Returns the number of trucks in the lots with a capacity strictly greater than the given one.
+    public int countAbove(int capacity) {
+        int totalCount = 0;
+        int node = root;
+        while (node != NIL) {
+            if (nodes.getCapacity(node) > capacity) {
+                totalCount = totalCount + nodes.getOccupied(node) + subtreeTrucks(nodes.getRight(node));
+                node = nodes.getLeft(node);
+            } else {
+                node = nodes.getRight(node);
+            }
+        }
+        return totalCount;
+    }
+
+    public int totalTrucks() {
+        return subtreeTrucks(root);
+    }
+}
@@ -0,0 +1,551 @@
+package parking;
+
+import java.util.Arrays;
+
+
+/**
+ * A LotIndex on a B+-tree with pages of up to 64 entries. The capacities of a page sit next to each
+ * other in one int array, so a lookup touches a handful of pages instead of one node per level of an
+ * AVLTree, and the leaves are linked in capacity order for the floor and ceiling scans.
+ *
+ * Every page keeps the number of trucks below it and three bit masks, one bit per entry: lot not full,
+ * waiting truck, ready truck. An inner page keeps the truck counts of its children in an int array too.
+ * The searches for a free slot or a truck are bit scans on the masks of the pages on one path, and count
+ * adds up the counts of the children right of the path.
+ *
+ * Pages are split on the way down when they are full, and a page that falls below a quarter full after
+ * a remove is merged with a neighbour or takes entries from it.
+ */
+public class BPlusLotIndex implements LotIndex {
+    // Entries per page, so the masks of a page fit in a long.
+    private static final int MAX = 64;
+    private static final int MIN = MAX / 4;
+    // Far more levels than 2^31 lots need at the minimum fill.
+    private static final int MAX_HEIGHT = 16;
+
+
+    private abstract static class Page {
+        int count = 0;
+        // Leaf: the capacities of the lots. Inner: keys[i] is at most every capacity under child i,
+        // and above every capacity under child i - 1. keys[0] of an inner page is not kept up to date.
+        final int[] keys = new int[MAX];
+        int trucks = 0;
+        long freeMask;
+        long waitingMask;
+        long readyMask;
+    }
+
+    private static final class Leaf extends Page {
+        final ParkingLot[] lots = new ParkingLot[MAX];
+        // The truck count of every lot as of its last update.
+        final int[] lotTrucks = new int[MAX];
+        Leaf previous;
+        Leaf next;
+    }
+
+    private static final class Inner extends Page {
+        final Page[] children = new Page[MAX];
+        final int[] childTrucks = new int[MAX];
+    }
+
+
+    private Page root = new Leaf();
+    private int size = 0;
+
+    // The inner pages and child indexes of the last descent.
+    private final Inner[] path = new Inner[MAX_HEIGHT];
+    private final int[] pathIndex = new int[MAX_HEIGHT];
+    private int depth;
+
+
+    public void insert(ParkingLot parkingLot) {
+        int capacity = parkingLot.getCapacity();
+        if (root.count == MAX) {
+            Inner newRoot = new Inner();
+            newRoot.children[0] = root;
+            newRoot.count = 1;
+            newRoot.trucks = root.trucks;
+            setChild(newRoot, 0);
+            splitChild(newRoot, 0);
+            root = newRoot;
+        }
+
+        // Full pages are split on the way down, so the leaf and every page above it have room.
+        depth = 0;
+        Page page = root;
+        while (page instanceof Inner) {
+            Inner inner = (Inner) page;
+            int i = childIndex(inner, capacity);
+            if (inner.children[i].count == MAX) {
+                splitChild(inner, i);
+                if (capacity >= inner.keys[i + 1]) {
+                    i++;
+                }
+            }
+            path[depth] = inner;
+            pathIndex[depth] = i;
+            depth++;
+            page = inner.children[i];
+        }
+
+        Leaf leaf = (Leaf) page;
+        int position = lowerBound(leaf, capacity);
+        if (position < leaf.count && leaf.keys[position] == capacity) {
+            return;
+        }
+        System.arraycopy(leaf.keys, position, leaf.keys, position + 1, leaf.count - position);
+        System.arraycopy(leaf.lots, position, leaf.lots, position + 1, leaf.count - position);
+        System.arraycopy(leaf.lotTrucks, position, leaf.lotTrucks, position + 1, leaf.count - position);
+        leaf.keys[position] = capacity;
+        leaf.lots[position] = parkingLot;
+        leaf.lotTrucks[position] = parkingLot.getOccupiedCapacity();
+        leaf.freeMask = insertBit(leaf.freeMask, position, isNotFull(parkingLot));
+        leaf.waitingMask = insertBit(leaf.waitingMask, position, parkingLot.getWaitingCount() != 0);
+        leaf.readyMask = insertBit(leaf.readyMask, position, parkingLot.getReadyCount() != 0);
+        leaf.count++;
+        leaf.trucks += parkingLot.getOccupiedCapacity();
+        size++;
+        updatePath(leaf, parkingLot.getOccupiedCapacity());
+    }
+
+    public ParkingLot remove(int capacity) {
+        Leaf leaf = descend(capacity);
+        int position = lowerBound(leaf, capacity);
+        if (position == leaf.count || leaf.keys[position] != capacity) {
+            return null;
+        }
+
+        ParkingLot removed = leaf.lots[position];
+        int trucks = leaf.lotTrucks[position];
+        System.arraycopy(leaf.keys, position + 1, leaf.keys, position, leaf.count - position - 1);
+        System.arraycopy(leaf.lots, position + 1, leaf.lots, position, leaf.count - position - 1);
+        System.arraycopy(leaf.lotTrucks, position + 1, leaf.lotTrucks, position, leaf.count - position - 1);
+        leaf.freeMask = removeBit(leaf.freeMask, position);
+        leaf.waitingMask = removeBit(leaf.waitingMask, position);
+        leaf.readyMask = removeBit(leaf.readyMask, position);
+        leaf.count--;
+        leaf.lots[leaf.count] = null;
+        leaf.trucks -= trucks;
+        size--;
+        updatePath(leaf, -trucks);
+
+        // Refill the pages on the path that got too small, from the bottom up.
+        Page page = leaf;
+        for (int d = depth - 1; d >= 0 && page.count < MIN; d--) {
+            if (path[d].count > 1) {
+                rebalance(path[d], pathIndex[d]);
+            }
+            page = path[d];
+        }
+        while (root instanceof Inner && root.count == 1) {
+            root = ((Inner) root).children[0];
+        }
+        return removed;
+    }
+
+    public ParkingLot find(int capacity) {
+        Leaf leaf = descend(capacity);
+        int position = lowerBound(leaf, capacity);
+        if (position < leaf.count && leaf.keys[position] == capacity) {
+            return leaf.lots[position];
+        }
+        return null;
+    }
+
+    public ParkingLot floor(int capacity) {
+        Leaf leaf = descend(capacity);
+        int position = upperBound(leaf, capacity) - 1;
+        if (position >= 0) {
+            return leaf.lots[position];
+        }
+        // Only the root leaf can be empty, so the previous leaf has a last lot.
+        return (leaf.previous == null) ? null : leaf.previous.lots[leaf.previous.count - 1];
+    }
+
+    public ParkingLot ceiling(int capacity) {
+        Leaf leaf = descend(capacity);
+        int position = lowerBound(leaf, capacity);
+        if (position < leaf.count) {
+            return leaf.lots[position];
+        }
+        return (leaf.next == null) ? null : leaf.next.lots[0];
+    }
+
+    public ParkingLot floorNotFull(int capacity) {
+        Leaf leaf = descend(capacity);
+        int last = upperBound(leaf, capacity) - 1;
+        long bits = (last < 0) ? 0 : leaf.freeMask & upTo(last);
+        if (bits != 0) {
+            return leaf.lots[highest(bits)];
+        }
+
+        // Climb until a page has a not full lot left of the path, then take the rightmost one below it.
+        for (int d = depth - 1; d >= 0; d--) {
+            bits = path[d].freeMask & below(pathIndex[d]);
+            if (bits != 0) {
+                Page page = path[d].children[highest(bits)];
+                while (page instanceof Inner) {
+                    page = ((Inner) page).children[highest(page.freeMask)];
+                }
+                return ((Leaf) page).lots[highest(page.freeMask)];
+            }
+        }
+        return null;
+    }
+
+    public ParkingLot ceilingWithWaiting(int capacity) {
+        return ceilingWith(capacity, false);
+    }
+
+    public ParkingLot ceilingWithReady(int capacity) {
+        return ceilingWith(capacity, true);
+    }
+
+    // Same climb as floorNotFull, to the right and on the waiting or ready masks.
+    private ParkingLot ceilingWith(int capacity, boolean ready) {
+        Leaf leaf = descend(capacity);
+        int first = lowerBound(leaf, capacity);
+        long bits = maskOf(leaf, ready) & from(first);
+        if (bits != 0) {
+            return leaf.lots[Long.numberOfTrailingZeros(bits)];
+        }
+
+        for (int d = depth - 1; d >= 0; d--) {
+            bits = maskOf(path[d], ready) & from(pathIndex[d] + 1);
+            if (bits != 0) {
+                Page page = path[d].children[Long.numberOfTrailingZeros(bits)];
+                while (page instanceof Inner) {
+                    page = ((Inner) page).children[Long.numberOfTrailingZeros(maskOf(page, ready))];
+                }
+                return ((Leaf) page).lots[Long.numberOfTrailingZeros(maskOf(page, ready))];
+            }
+        }
+        return null;
+    }
+
+    public int countAbove(int capacity) {
+        int total = 0;
+        Page page = root;
+        while (page instanceof Inner) {
+            Inner inner = (Inner) page;
+            int i = childIndex(inner, capacity);
+            for (int j = i + 1; j < inner.count; j++) {
+                total += inner.childTrucks[j];
+            }
+            page = inner.children[i];
+        }
+
+        Leaf leaf = (Leaf) page;
+        for (int j = upperBound(leaf, capacity); j < leaf.count; j++) {
+            total += leaf.lotTrucks[j];
+        }
+        return total;
+    }
+
+    public int totalTrucks() {
+        return root.trucks;
+    }
+
+    public void update(ParkingLot parkingLot) {
+        Leaf leaf = descend(parkingLot.getCapacity());
+        int position = lowerBound(leaf, parkingLot.getCapacity());
+        if (position == leaf.count || leaf.lots[position] != parkingLot) {
+            return;
+        }
+        int delta = parkingLot.getOccupiedCapacity() - leaf.lotTrucks[position];
+        leaf.lotTrucks[position] += delta;
+        leaf.trucks += delta;
+        leaf.freeMask = withBit(leaf.freeMask, position, isNotFull(parkingLot));
+        leaf.waitingMask = withBit(leaf.waitingMask, position, parkingLot.getWaitingCount() != 0);
+        leaf.readyMask = withBit(leaf.readyMask, position, parkingLot.getReadyCount() != 0);
+        updatePath(leaf, delta);
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    // Walks from the root to the leaf that holds the capacity or would, recording the path.
+    private Leaf descend(int capacity) {
+        depth = 0;
+        Page page = root;
+        while (page instanceof Inner) {
+            Inner inner = (Inner) page;
+            int i = childIndex(inner, capacity);
+            path[depth] = inner;
+            pathIndex[depth] = i;
+            depth++;
+            page = inner.children[i];
+        }
+        return (Leaf) page;
+    }
+
+    // Adds the change in trucks and the new masks of the page at the end of the path to its ancestors.
+    // Stops early once a page's aggregates stay the same.
+    private void updatePath(Page page, int delta) {
+        for (int d = depth - 1; d >= 0; d--) {
+            Inner inner = path[d];
+            int i = pathIndex[d];
+            long free = inner.freeMask;
+            long waiting = inner.waitingMask;
+            long ready = inner.readyMask;
+            inner.childTrucks[i] += delta;
+            inner.trucks += delta;
+            inner.freeMask = withBit(free, i, page.freeMask != 0);
+            inner.waitingMask = withBit(waiting, i, page.waitingMask != 0);
+            inner.readyMask = withBit(ready, i, page.readyMask != 0);
+            if (delta == 0 && free == inner.freeMask && waiting == inner.waitingMask && ready == inner.readyMask) {
+                return;
+            }
+            page = inner;
+        }
+    }
+
+
+    // Splits the full child i into two halves and adds the upper one as child i + 1.
+    private void splitChild(Inner parent, int i) {
+        Page child = parent.children[i];
+        int half = MAX / 2;
+        Page sibling;
+        if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            Leaf right = new Leaf();
+            System.arraycopy(leaf.lots, half, right.lots, 0, MAX - half);
+            Arrays.fill(leaf.lots, half, MAX, null);
+            right.next = leaf.next;
+            if (right.next != null) {
+                right.next.previous = right;
+            }
+            right.previous = leaf;
+            leaf.next = right;
+            sibling = right;
+        } else {
+            Inner inner = (Inner) child;
+            Inner right = new Inner();
+            System.arraycopy(inner.children, half, right.children, 0, MAX - half);
+            Arrays.fill(inner.children, half, MAX, null);
+            sibling = right;
+        }
+        System.arraycopy(child.keys, half, sibling.keys, 0, MAX - half);
+        child.count = half;
+        sibling.count = MAX - half;
+        recompute(child);
+        recompute(sibling);
+
+        System.arraycopy(parent.keys, i + 1, parent.keys, i + 2, parent.count - i - 1);
+        System.arraycopy(parent.children, i + 1, parent.children, i + 2, parent.count - i - 1);
+        System.arraycopy(parent.childTrucks, i + 1, parent.childTrucks, i + 2, parent.count - i - 1);
+        parent.freeMask = insertBit(parent.freeMask, i + 1, false);
+        parent.waitingMask = insertBit(parent.waitingMask, i + 1, false);
+        parent.readyMask = insertBit(parent.readyMask, i + 1, false);
+        parent.keys[i + 1] = sibling.keys[0];
+        parent.children[i + 1] = sibling;
+        parent.count++;
+        setChild(parent, i);
+        setChild(parent, i + 1);
+    }
+
+    // Child i is below the minimum. Merges it with a neighbour if both fit in one page,
+    // otherwise moves entries over from the neighbour until both have about the same number.
+    private void rebalance(Inner parent, int i) {
+        int j = (i > 0) ? i - 1 : i;
+        Page left = parent.children[j];
+        Page right = parent.children[j + 1];
+        if (right instanceof Inner) {
+            // The separator is the lower bound of the right page's first child.
+            right.keys[0] = parent.keys[j + 1];
+        }
+
+        if (left.count + right.count <= MAX) {
+            moveEntries(right, 0, left, left.count, right.count);
+            left.count += right.count;
+            if (left instanceof Leaf) {
+                Leaf leaf = (Leaf) left;
+                leaf.next = ((Leaf) right).next;
+                if (leaf.next != null) {
+                    leaf.next.previous = leaf;
+                }
+            }
+            recompute(left);
+
+            System.arraycopy(parent.keys, j + 2, parent.keys, j + 1, parent.count - j - 2);
+            System.arraycopy(parent.children, j + 2, parent.children, j + 1, parent.count - j - 2);
+            System.arraycopy(parent.childTrucks, j + 2, parent.childTrucks, j + 1, parent.count - j - 2);
+            parent.freeMask = removeBit(parent.freeMask, j + 1);
+            parent.waitingMask = removeBit(parent.waitingMask, j + 1);
+            parent.readyMask = removeBit(parent.readyMask, j + 1);
+            parent.count--;
+            parent.children[parent.count] = null;
+            setChild(parent, j);
+            return;
+        }
+
+        int target = (left.count + right.count) / 2;
+        if (left.count < target) {
+            int n = target - left.count;
+            moveEntries(right, 0, left, left.count, n);
+            moveEntries(right, n, right, 0, right.count - n);
+            left.count += n;
+            right.count -= n;
+            clearFrom(right, right.count, right.count + n);
+        } else {
+            int n = left.count - target;
+            moveEntries(right, 0, right, n, right.count);
+            moveEntries(left, target, right, 0, n);
+            left.count -= n;
+            right.count += n;
+            clearFrom(left, left.count, left.count + n);
+        }
+        recompute(left);
+        recompute(right);
+        parent.keys[j + 1] = right.keys[0];
+        setChild(parent, j);
+        setChild(parent, j + 1);
+    }
+
+    // Copies n entries, keys with their lots or children, between two pages of the same kind.
+    private static void moveEntries(Page from, int fromIndex, Page to, int toIndex, int n) {
+        System.arraycopy(from.keys, fromIndex, to.keys, toIndex, n);
+        if (from instanceof Leaf) {
+            System.arraycopy(((Leaf) from).lots, fromIndex, ((Leaf) to).lots, toIndex, n);
+        } else {
+            System.arraycopy(((Inner) from).children, fromIndex, ((Inner) to).children, toIndex, n);
+        }
+    }
+
+    // Lets go of the lots or children in entries [from, to), which are past the count.
+    private static void clearFrom(Page page, int from, int to) {
+        if (page instanceof Leaf) {
+            Arrays.fill(((Leaf) page).lots, from, to, null);
+        } else {
+            Arrays.fill(((Inner) page).children, from, to, null);
+        }
+    }
+
+    // Rebuilds the truck counts and masks of a page from its lots or children.
+    private static void recompute(Page page) {
+        page.trucks = 0;
+        page.freeMask = 0;
+        page.waitingMask = 0;
+        page.readyMask = 0;
+        if (page instanceof Leaf) {
+            Leaf leaf = (Leaf) page;
+            for (int i = 0; i < leaf.count; i++) {
+                ParkingLot parkingLot = leaf.lots[i];
+                leaf.lotTrucks[i] = parkingLot.getOccupiedCapacity();
+                leaf.trucks += leaf.lotTrucks[i];
+                leaf.freeMask = withBit(leaf.freeMask, i, isNotFull(parkingLot));
+                leaf.waitingMask = withBit(leaf.waitingMask, i, parkingLot.getWaitingCount() != 0);
+                leaf.readyMask = withBit(leaf.readyMask, i, parkingLot.getReadyCount() != 0);
+            }
+        } else {
+            Inner inner = (Inner) page;
+            for (int i = 0; i < inner.count; i++) {
+                setChild(inner, i);
+                inner.trucks += inner.childTrucks[i];
+            }
+        }
+    }
+
+    // Copies the truck count and the masks of child i into the parent's entry i.
+    private static void setChild(Inner parent, int i) {
+        Page child = parent.children[i];
+        parent.childTrucks[i] = child.trucks;
+        parent.freeMask = withBit(parent.freeMask, i, child.freeMask != 0);
+        parent.waitingMask = withBit(parent.waitingMask, i, child.waitingMask != 0);
+        parent.readyMask = withBit(parent.readyMask, i, child.readyMask != 0);
+    }
+
+
+    // Returns the index of the child whose range holds the capacity.
+    private static int childIndex(Inner inner, int capacity) {
+        int low = 1;
+        int high = inner.count - 1;
+        int result = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (inner.keys[middle] <= capacity) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    // Returns the index of the first lot with at least the capacity, or the count if there is none.
+    private static int lowerBound(Leaf leaf, int capacity) {
+        int low = 0;
+        int high = leaf.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (leaf.keys[middle] < capacity) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns the index of the first lot above the capacity, or the count if there is none.
+    private static int upperBound(Leaf leaf, int capacity) {
+        int low = 0;
+        int high = leaf.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (leaf.keys[middle] <= capacity) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    private static boolean isNotFull(ParkingLot parkingLot) {
+        return parkingLot.getOccupiedCapacity() != parkingLot.getTruckLimit();
+    }
+
+    private static long maskOf(Page page, boolean ready) {
+        return ready ? page.readyMask : page.waitingMask;
+    }
+
+    // Bits 0 to index, both inclusive.
+    private static long upTo(int index) {
+        return (index >= 63) ? -1L : (1L << (index + 1)) - 1;
+    }
+
+    // Bits below the index.
+    private static long below(int index) {
+        return (1L << index) - 1;
+    }
+
+    // Bits from the index up.
+    private static long from(int index) {
+        return (index >= 64) ? 0 : -1L << index;
+    }
+
+    private static int highest(long bits) {
+        return 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    private static long withBit(long mask, int index, boolean set) {
+        return set ? mask | (1L << index) : mask & ~(1L << index);
+    }
+
+    // Shifts the bits from the index up by one and puts the new bit at the index.
+    private static long insertBit(long mask, int index, boolean set) {
+        long low = below(index);
+        return (mask & low) | ((mask & ~low) << 1) | (set ? 1L << index : 0);
+    }
+
+    // Drops the bit at the index and shifts the bits above it down by one.
+    private static long removeBit(long mask, int index) {
+        long low = below(index);
+        return (mask & low) | ((mask >>> 1) & ~low);
+    }
+}
@@ -0,0 +1,40 @@
+package parking;
+
+/**
+ * The compact binary command log format.
+ * A log starts with the magic bytes "AVLC" and a version byte. Each command is then one opcode byte
+ * followed by its arguments as zigzag varints, so small capacities and ids take a single byte.
+ */
+public final class BinaryCommandLog {
+    public static final byte[] MAGIC = {'A', 'V', 'L', 'C'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = MAGIC.length + 1;
+
+    // Opcode byte plus two varints of at most five bytes each.
+    public static final int MAX_COMMAND_SIZE = 11;
+
+
+    private BinaryCommandLog() {
+    }
+
+
+    // Returns how many int arguments follow the opcode.
+    public static int argumentCount(int opcode) {
+        switch (opcode) {
+            case Commands.READY:
+            case Commands.COUNT:
+            case Commands.DELETE_PARKING_LOT:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    public static int zigzagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,115 @@
+package parking;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads a binary command log through a memory-mapped window.
+ */
+public class BinaryCommandReader implements CommandSource {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private MappedByteBuffer buffer;
+    private long windowStart = 0;
+    private int position = 0;
+
+
+    public BinaryCommandReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            mapWindow(0);
+            checkHeader(path);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        position = BinaryCommandLog.HEADER_SIZE;
+    }
+
+    // Reads the commands from the offset on, without a header check. For files that keep commands in this
+    // format behind a header of their own, such as a CommandJournal.
+    BinaryCommandReader(Path path, long offset) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            mapWindow(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void checkHeader(Path path) throws IOException {
+        if (fileSize < BinaryCommandLog.HEADER_SIZE) {
+            throw new IOException("Not a binary command log: " + path);
+        }
+        for (int i = 0; i < BinaryCommandLog.MAGIC.length; i++) {
+            if (buffer.get(i) != BinaryCommandLog.MAGIC[i]) {
+                throw new IOException("Not a binary command log: " + path);
+            }
+        }
+        if (buffer.get(BinaryCommandLog.MAGIC.length) != BinaryCommandLog.VERSION) {
+            throw new IOException("Unsupported binary command log version: " + buffer.get(BinaryCommandLog.MAGIC.length));
+        }
+    }
+
+
+    @Override
+    public int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException {
+        int count = 0;
+        while (count < opcodes.length) {
+            // Move the window so that a command never crosses its end.
+            if (buffer.limit() - position < BinaryCommandLog.MAX_COMMAND_SIZE
+                    && windowStart + buffer.limit() < fileSize) {
+                mapWindow(windowStart + position);
+            }
+            if (position >= buffer.limit()) {
+                break;
+            }
+
+            int opcode = buffer.get(position++);
+            opcodes[count] = opcode;
+            firsts[count] = BinaryCommandLog.zigzagDecode(readVarint());
+            if (BinaryCommandLog.argumentCount(opcode) == 2) {
+                seconds[count] = BinaryCommandLog.zigzagDecode(readVarint());
+            } else {
+                seconds[count] = 0;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value = value | ((b & 0x7F) << shift);
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private void mapWindow(long start) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        position = 0;
+    }
+}
@@ -0,0 +1,45 @@
+package parking;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes commands in the binary command log format.
+ */
+public class BinaryCommandWriter implements Closeable {
+    private final OutputStream out;
+
+
+    public BinaryCommandWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+        this.out.write(BinaryCommandLog.MAGIC);
+        this.out.write(BinaryCommandLog.VERSION);
+    }
+
+
+    public void write(int opcode, int first, int second) throws IOException {
+        out.write(opcode);
+        writeVarint(BinaryCommandLog.zigzagEncode(first));
+        if (BinaryCommandLog.argumentCount(opcode) == 2) {
+            writeVarint(BinaryCommandLog.zigzagEncode(second));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+
+    // Seven bits per byte, lowest bits first. The high bit marks that another byte follows.
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value = value >>> 7;
+        }
+        out.write(value);
+    }
+}
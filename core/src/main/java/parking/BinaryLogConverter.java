@@ -0,0 +1,42 @@
+package parking;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+
+/**
+ * Converts a text command file into the binary command log format.
+ * Usage: java -cp core/target/classes parking.BinaryLogConverter [input.txt] [output.bin]
+ */
+public class BinaryLogConverter {
+    private static final int BATCH_SIZE = 1 << 14;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java -cp core/target/classes parking.BinaryLogConverter [input.txt] [output.bin]");
+            return;
+        }
+
+        int[] opcodes = new int[BATCH_SIZE];
+        int[] firsts = new int[BATCH_SIZE];
+        int[] seconds = new int[BATCH_SIZE];
+        long commands = 0;
+
+        try (MappedCommandParser parser = new MappedCommandParser(Paths.get(args[0]));
+             BinaryCommandWriter writer = new BinaryCommandWriter(new FileOutputStream(args[1]))) {
+            int count;
+            while ((count = parser.parse(opcodes, firsts, seconds)) != 0) {
+                for (int i = 0; i < count; i++) {
+                    writer.write(opcodes[i], firsts[i], seconds[i]);
+                }
+                commands += count;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        System.out.println("Converted " + commands + " commands to " + args[1]);
+    }
+}
@@ -0,0 +1,197 @@
+package parking;
+
+/**
+ * A LotIndex for capacities up to a configured maximum. The lots sit in an array indexed by capacity,
+ * and four HierarchicalBitmaps over the capacities mark the lots that exist, are not full, have a waiting
+ * truck and have a ready truck. The routing searches are a next or previous on one bitmap, O(log_64 U)
+ * word reads for U capacities, and count is a prefix sum in a Fenwick tree of the truck counts.
+ *
+ * Lots with a capacity below 0 or above the maximum go into an AVLTree next to the bitmaps,
+ * and the searches take the better of the two answers. While it is empty it costs one size check.
+ */
+public class BitmapLotIndex implements LotIndex {
+    private final int maxCapacity;
+    private final ParkingLot[] lots;
+    // The truck count of every lot as of its last update.
+    private final int[] lotTrucks;
+    private final HierarchicalBitmap present;
+    private final HierarchicalBitmap free;
+    private final HierarchicalBitmap waiting;
+    private final HierarchicalBitmap ready;
+    // Fenwick tree of lotTrucks, entry i + 1 is for capacity i.
+    private final int[] truckSums;
+    private int trucks = 0;
+    private int size = 0;
+
+    private final AVLTree outside = new AVLTree();
+
+
+    public BitmapLotIndex(int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+        int universe = maxCapacity + 1;
+        lots = new ParkingLot[universe];
+        lotTrucks = new int[universe];
+        present = new HierarchicalBitmap(universe);
+        free = new HierarchicalBitmap(universe);
+        waiting = new HierarchicalBitmap(universe);
+        ready = new HierarchicalBitmap(universe);
+        truckSums = new int[universe + 1];
+    }
+
+
+    private boolean inRange(int capacity) {
+        return capacity >= 0 && capacity <= maxCapacity;
+    }
+
+    public void insert(ParkingLot parkingLot) {
+        int capacity = parkingLot.getCapacity();
+        if (!inRange(capacity)) {
+            outside.insert(parkingLot);
+            return;
+        }
+        if (lots[capacity] != null) {
+            return;
+        }
+        lots[capacity] = parkingLot;
+        present.set(capacity);
+        size++;
+        setState(capacity, parkingLot);
+    }
+
+    public ParkingLot remove(int capacity) {
+        if (!inRange(capacity)) {
+            return outside.remove(capacity);
+        }
+        ParkingLot removed = lots[capacity];
+        if (removed != null) {
+            addTrucks(capacity, -lotTrucks[capacity]);
+            lotTrucks[capacity] = 0;
+            lots[capacity] = null;
+            present.clear(capacity);
+            free.clear(capacity);
+            waiting.clear(capacity);
+            ready.clear(capacity);
+            size--;
+        }
+        return removed;
+    }
+
+    public ParkingLot find(int capacity) {
+        return inRange(capacity) ? lots[capacity] : outside.find(capacity);
+    }
+
+    public ParkingLot floor(int capacity) {
+        return higher(lotAtMost(present, capacity), (outside.size() == 0) ? null : outside.floor(capacity));
+    }
+
+    public ParkingLot ceiling(int capacity) {
+        return lower(lotAtLeast(present, capacity), (outside.size() == 0) ? null : outside.ceiling(capacity));
+    }
+
+    public ParkingLot floorNotFull(int capacity) {
+        return higher(lotAtMost(free, capacity), (outside.size() == 0) ? null : outside.floorNotFull(capacity));
+    }
+
+    public ParkingLot ceilingWithWaiting(int capacity) {
+        return lower(lotAtLeast(waiting, capacity), (outside.size() == 0) ? null : outside.ceilingWithWaiting(capacity));
+    }
+
+    public ParkingLot ceilingWithReady(int capacity) {
+        return lower(lotAtLeast(ready, capacity), (outside.size() == 0) ? null : outside.ceilingWithReady(capacity));
+    }
+
+    public int countAbove(int capacity) {
+        int above;
+        if (capacity < 0) {
+            above = trucks;
+        } else if (capacity >= maxCapacity) {
+            above = 0;
+        } else {
+            above = trucks - trucksUpTo(capacity);
+        }
+        return (outside.size() == 0) ? above : above + outside.countAbove(capacity);
+    }
+
+    public int totalTrucks() {
+        return (outside.size() == 0) ? trucks : trucks + outside.totalTrucks();
+    }
+
+    public void update(ParkingLot parkingLot) {
+        int capacity = parkingLot.getCapacity();
+        if (!inRange(capacity)) {
+            outside.update(parkingLot);
+        } else if (lots[capacity] == parkingLot) {
+            setState(capacity, parkingLot);
+        }
+    }
+
+    public int size() {
+        return size + outside.size();
+    }
+
+
+    // Takes in the truck count and the three flags of the lot.
+    private void setState(int capacity, ParkingLot parkingLot) {
+        int delta = parkingLot.getOccupiedCapacity() - lotTrucks[capacity];
+        if (delta != 0) {
+            lotTrucks[capacity] += delta;
+            addTrucks(capacity, delta);
+        }
+        setBit(free, capacity, parkingLot.getOccupiedCapacity() != parkingLot.getTruckLimit());
+        setBit(waiting, capacity, parkingLot.getWaitingCount() != 0);
+        setBit(ready, capacity, parkingLot.getReadyCount() != 0);
+    }
+
+    private static void setBit(HierarchicalBitmap bitmap, int index, boolean set) {
+        if (bitmap.get(index) != set) {
+            if (set) {
+                bitmap.set(index);
+            } else {
+                bitmap.clear(index);
+            }
+        }
+    }
+
+    // Returns the lot of the biggest capacity in the bitmap at most the given one, or null.
+    private ParkingLot lotAtMost(HierarchicalBitmap bitmap, int capacity) {
+        int found = bitmap.previous(Math.min(capacity, maxCapacity));
+        return (found < 0) ? null : lots[found];
+    }
+
+    // Returns the lot of the smallest capacity in the bitmap at least the given one, or null.
+    private ParkingLot lotAtLeast(HierarchicalBitmap bitmap, int capacity) {
+        int found = bitmap.next(Math.max(capacity, 0));
+        return (found < 0) ? null : lots[found];
+    }
+
+    private static ParkingLot higher(ParkingLot first, ParkingLot second) {
+        if (first == null || (second != null && second.getCapacity() > first.getCapacity())) {
+            return second;
+        }
+        return first;
+    }
+
+    private static ParkingLot lower(ParkingLot first, ParkingLot second) {
+        if (first == null || (second != null && second.getCapacity() < first.getCapacity())) {
+            return second;
+        }
+        return first;
+    }
+
+
+    private void addTrucks(int capacity, int delta) {
+        trucks += delta;
+        for (int i = capacity + 1; i < truckSums.length; i += i & -i) {
+            truckSums[i] += delta;
+        }
+    }
+
+    // Returns the number of trucks in the lots with a capacity from 0 to the given one.
+    private int trucksUpTo(int capacity) {
+        int sum = 0;
+        for (int i = capacity + 1; i > 0; i -= i & -i) {
+            sum += truckSums[i];
+        }
+        return sum;
+    }
+}
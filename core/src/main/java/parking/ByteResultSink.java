@@ -0,0 +1,117 @@
+package parking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * A ResultSink that encodes the output as ASCII bytes into a growable buffer.
+ * Ints are written digit by digit, so nothing is allocated once the buffer is big enough.
+ */
+public class ByteResultSink implements ResultSink {
+    private static final int DEFAULT_SIZE = 1 << 16;
+
+    private byte[] buffer;
+    private int size = 0;
+
+    // True if the next value starts a new group and needs no leading space.
+    private boolean groupStart = true;
+
+
+    public ByteResultSink() {
+        this(DEFAULT_SIZE);
+    }
+
+    public ByteResultSink(int initialSize) {
+        buffer = new byte[Math.max(initialSize, 16)];
+    }
+
+
+    @Override
+    public void writeInt(int value) {
+        // Sign, ten digits and the leading space.
+        ensureSpace(12);
+        if (!groupStart) {
+            buffer[size++] = ' ';
+        }
+        groupStart = false;
+
+        // Work with the negative value so that Integer.MIN_VALUE needs no special case.
+        if (value < 0) {
+            buffer[size++] = '-';
+        } else {
+            value = -value;
+        }
+
+        int digits = 0;
+        int rest = value;
+        do {
+            digits++;
+            rest = rest / 10;
+        } while (rest != 0);
+
+        int position = size + digits;
+        size = position;
+        do {
+            buffer[--position] = (byte) ('0' - value % 10);
+            value = value / 10;
+        } while (value != 0);
+    }
+
+    @Override
+    public void writeSeparator() {
+        ensureSpace(3);
+        buffer[size++] = ' ';
+        buffer[size++] = '-';
+        buffer[size++] = ' ';
+        groupStart = true;
+    }
+
+    @Override
+    public void endLine() {
+        ensureSpace(1);
+        buffer[size++] = '\n';
+        groupStart = true;
+    }
+
+
+    // Returns the number of buffered bytes.
+    public int size() {
+        return size;
+    }
+
+    // Writes the buffered bytes to the stream and empties the buffer.
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+
+    // Returns a copy of the buffered bytes and empties the buffer.
+    public byte[] takeBytes() {
+        byte[] bytes = Arrays.copyOf(buffer, size);
+        size = 0;
+        return bytes;
+    }
+
+    // Empties the buffer without writing it anywhere.
+    public void clear() {
+        size = 0;
+        groupStart = true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.US_ASCII);
+    }
+
+
+    private void ensureSpace(int bytes) {
+        if (size + bytes > buffer.length) {
+            byte[] bigger = new byte[Math.max(buffer.length * 2, size + bytes)];
+            System.arraycopy(buffer, 0, bigger, 0, size);
+            buffer = bigger;
+        }
+    }
+}
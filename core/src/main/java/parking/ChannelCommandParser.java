@@ -0,0 +1,174 @@
+package parking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Reads the text command format from a channel, such as a socket, as it arrives.
+ * A call to parse returns the complete lines that are already buffered and only waits for the
+ * channel when there are none, so a client that sends many commands at once gets them run in batches.
+ * Like MappedCommandParser it decodes the bytes without creating a String per line.
+ */
+public class ChannelCommandParser implements CommandSource {
+    private static final int INITIAL_SIZE = 1 << 16;
+
+    private static final byte[][] NAMES = new byte[Commands.OPCODE_COUNT][];
+    static {
+        for (int opcode = 0; opcode < NAMES.length; opcode++) {
+            NAMES[opcode] = Commands.nameOf(opcode).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final ReadableByteChannel channel;
+
+    // The unparsed bytes are buffer[position, limit).
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+
+    public ChannelCommandParser(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+
+    // Parses the buffered complete lines, waiting for more input only if there are none.
+    // Returns 0 once the channel is at its end and every line is parsed.
+    @Override
+    public int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException {
+        int count = 0;
+        while (count < opcodes.length) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                if (count > 0) {
+                    break;
+                }
+                if (endOfInput) {
+                    if (position == limit) {
+                        break;
+                    }
+                    // The last line has no line break.
+                    lineEnd = limit;
+                } else {
+                    fill();
+                    continue;
+                }
+            }
+
+            int opcode = parseLine(firsts, seconds, count, lineEnd);
+            position = Math.min(lineEnd + 1, limit);
+            if (opcode != Commands.UNKNOWN) {
+                opcodes[count] = opcode;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private int findLineEnd() {
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Moves the unparsed bytes to the front, grows the buffer if a line fills it, then reads once.
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            byte[] bigger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, position, bigger, 0, remaining);
+            buffer = bigger;
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    // Parses the line from the current position to lineEnd. Returns the opcode or UNKNOWN.
+    private int parseLine(int[] firsts, int[] seconds, int index, int lineEnd) {
+        skipBlanks(lineEnd);
+
+        int wordStart = position;
+        while (position < lineEnd && !isSeparator(buffer[position])) {
+            position++;
+        }
+        int opcode = matchOpcode(wordStart, position);
+
+        firsts[index] = parseInt(lineEnd);
+        seconds[index] = parseInt(lineEnd);
+        return opcode;
+    }
+
+    private int matchOpcode(int start, int end) {
+        for (int opcode = 0; opcode < NAMES.length; opcode++) {
+            byte[] name = NAMES[opcode];
+            if (name.length != end - start) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length && buffer[start + i] == name[i]) {
+                i++;
+            }
+            if (i == name.length) {
+                return opcode;
+            }
+        }
+        return Commands.UNKNOWN;
+    }
+
+    // Parses the next int on the line, or returns 0 if there is none.
+    private int parseInt(int lineEnd) {
+        skipBlanks(lineEnd);
+
+        boolean negative = false;
+        if (position < lineEnd && buffer[position] == '-') {
+            negative = true;
+            position++;
+        }
+
+        int value = 0;
+        while (position < lineEnd) {
+            int digit = buffer[position] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (negative) {
+            return -value;
+        }
+        return value;
+    }
+
+    private void skipBlanks(int lineEnd) {
+        while (position < lineEnd && (buffer[position] == ' ' || buffer[position] == '\t' || buffer[position] == '\r')) {
+            position++;
+        }
+    }
+
+    private boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
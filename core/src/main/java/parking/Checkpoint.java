@@ -0,0 +1,181 @@
+package parking;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * The checkpoint file format, written by AVLTree.checkpoint and read by AVLTree.restore.
+ * A checkpoint starts with the magic bytes "AVLK", a version byte, the number of commands the network
+ * had run as eight bytes and the number of lots as a varint. The lots follow in increasing capacity
+ * order: the capacity as the difference to the previous one, the truck limit and the waiting and ready
+ * counts, then the id, capacity and load of each waiting and then each ready truck in FIFO order.
+ * The occupancy of a lot is its waiting count plus its ready count. Every number is a zigzag varint.
+ *
+ * A checkpoint is written to a temporary file next to the target, forced to disk and then renamed over
+ * the target, so a crash while it is written leaves the previous checkpoint as it was.
+ */
+public final class Checkpoint {
+    public static final byte[] MAGIC = {'A', 'V', 'L', 'K'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = MAGIC.length + 1 + Long.BYTES;
+
+
+    private Checkpoint() {
+    }
+
+
+    /**
+     * Writes the numbers of a checkpoint through a buffer into the temporary file. commit() puts the
+     * finished checkpoint in place, closing the writer without a commit deletes the temporary file.
+     */
+    static final class Writer implements Closeable {
+        private final Path path;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final OutputStream out;
+        private boolean committed = false;
+
+        Writer(Path path, long commandCount) throws IOException {
+            this.path = path;
+            temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            out.write(MAGIC);
+            out.write(VERSION);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (commandCount >>> shift));
+            }
+        }
+
+        void writeInt(int value) throws IOException {
+            int bits = BinaryCommandLog.zigzagEncode(value);
+            while ((bits & ~0x7F) != 0) {
+                out.write((bits & 0x7F) | 0x80);
+                bits = bits >>> 7;
+            }
+            out.write(bits);
+        }
+
+        // Forces the checkpoint to disk and renames it over the target in one step.
+        void commit() throws IOException {
+            out.flush();
+            channel.force(true);
+            out.close();
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+
+    /**
+     * Reads the numbers of a checkpoint through a memory-mapped window.
+     */
+    static final class Reader implements Closeable {
+        private static final long WINDOW_SIZE = 1L << 30;
+
+        // The window is moved once fewer bytes than this are left, so a number never crosses its end.
+        private static final int MAX_VARINT_SIZE = 5;
+
+        private final Path path;
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long commandCount;
+
+        private MappedByteBuffer buffer;
+        private long windowStart = 0;
+        private int position = 0;
+
+        Reader(Path path) throws IOException {
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                fileSize = channel.size();
+                mapWindow(0);
+                commandCount = readHeader();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            position = HEADER_SIZE;
+        }
+
+        private long readHeader() throws IOException {
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a checkpoint: " + path);
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a checkpoint: " + path);
+                }
+            }
+            if (buffer.get(MAGIC.length) != VERSION) {
+                throw new IOException("Unsupported checkpoint version: " + buffer.get(MAGIC.length));
+            }
+            return buffer.getLong(MAGIC.length + 1);
+        }
+
+        // Number of commands the network had run when the checkpoint was written.
+        long getCommandCount() {
+            return commandCount;
+        }
+
+        int readInt() throws IOException {
+            if (buffer.limit() - position < MAX_VARINT_SIZE && windowStart + buffer.limit() < fileSize) {
+                mapWindow(windowStart + position);
+            }
+
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                // The window only ends inside a number at the end of the file.
+                if (position == buffer.limit()) {
+                    throw new IOException("Truncated checkpoint: " + path);
+                }
+                if (shift > 28) {
+                    throw new IOException("Corrupt checkpoint, a number is longer than " + MAX_VARINT_SIZE
+                            + " bytes: " + path);
+                }
+                b = buffer.get(position++);
+                value = value | ((b & 0x7F) << shift);
+                shift += 7;
+            } while (b < 0);
+            return BinaryCommandLog.zigzagDecode(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void mapWindow(long start) throws IOException {
+            long size = Math.min(WINDOW_SIZE, fileSize - start);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+            position = 0;
+        }
+    }
+}
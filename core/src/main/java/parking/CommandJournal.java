@@ -0,0 +1,228 @@
+package parking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * An append-only journal of the commands a network ran. The journal starts with the magic bytes "AVLJ",
+ * a version byte and, as eight bytes, the index of its first command in the input: the number of commands
+ * a restored checkpoint already held when the journal was started, 0 without one. The commands follow in
+ * the binary command log format, so reader(path) can replay them with a BinaryCommandReader.
+ *
+ * Commands are encoded into a buffer and written through a FileChannel. They are forced to disk with
+ * group commit: once syncEvery commands are pending or syncMillis have passed since the last sync,
+ * whichever comes first. A crash can lose the commands since the last sync, never earlier ones.
+ * Opening an existing journal drops a command that was only partly written and appends after the rest.
+ */
+public class CommandJournal implements Closeable {
+    public static final byte[] MAGIC = {'A', 'V', 'L', 'J'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = MAGIC.length + 1 + Long.BYTES;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The clock is only read every this many commands.
+    private static final int CLOCK_INTERVAL = 64;
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final int syncEvery;
+    private final long syncNanos;
+
+    // Index of the first command of the journal in the input.
+    private final long baseCount;
+    // Commands in the journal when it was opened, and the ones appended since.
+    private final long recoveredCount;
+    private long appendedCount = 0;
+
+    private int pendingCount = 0;
+    private long lastSync = System.nanoTime();
+
+
+    // Opens the journal at the path, or starts a new one whose first command is the one at baseCount
+    // in the input. The base of an existing journal is the one in its header.
+    public CommandJournal(Path path, long baseCount, int syncEvery, long syncMillis) throws IOException {
+        this.syncEvery = Math.max(1, syncEvery);
+        this.syncNanos = syncMillis * 1_000_000;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long validLength = HEADER_SIZE;
+        long count = 0;
+        if (channel.size() < HEADER_SIZE) {
+            // New, or the header itself was cut off.
+            channel.truncate(0);
+            buffer.put(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.putLong(baseCount);
+        } else {
+            long[] scan = scan(path);
+            baseCount = scan[0];
+            validLength = scan[1];
+            count = scan[2];
+            channel.truncate(validLength);
+        }
+        this.baseCount = baseCount;
+        recoveredCount = count;
+        channel.position(validLength - buffer.position());
+    }
+
+    // Returns a reader over the commands of a journal.
+    public static CommandSource reader(Path path) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkHeader(reader.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, reader.size())), path);
+        }
+        return new BinaryCommandReader(path, HEADER_SIZE);
+    }
+
+
+    // Index in the input of the first command of the journal.
+    public long getBaseCount() {
+        return baseCount;
+    }
+
+    // Number of complete commands the journal held when it was opened.
+    public long getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    // Index in the input of the command after the last one in the journal.
+    public long getCommandCount() {
+        return baseCount + recoveredCount + appendedCount;
+    }
+
+
+    public void append(int opcode, int first, int second) throws IOException {
+        if (buffer.remaining() < BinaryCommandLog.MAX_COMMAND_SIZE) {
+            writeBuffer();
+        }
+        buffer.put((byte) opcode);
+        writeVarint(BinaryCommandLog.zigzagEncode(first));
+        if (BinaryCommandLog.argumentCount(opcode) == 2) {
+            writeVarint(BinaryCommandLog.zigzagEncode(second));
+        }
+        appendedCount++;
+        pendingCount++;
+
+        if (pendingCount >= syncEvery
+                || (pendingCount % CLOCK_INTERVAL == 0 && System.nanoTime() - lastSync >= syncNanos)) {
+            sync();
+        }
+    }
+
+    // Appends count commands from the arrays, starting at index from.
+    public void append(int[] opcodes, int[] firsts, int[] seconds, int from, int count) throws IOException {
+        for (int i = from; i < from + count; i++) {
+            append(opcodes[i], firsts[i], seconds[i]);
+        }
+    }
+
+    // Writes out the buffered commands and forces them to disk.
+    public void sync() throws IOException {
+        writeBuffer();
+        channel.force(false);
+        pendingCount = 0;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Seven bits per byte, lowest bits first. The high bit marks that another byte follows.
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value = value >>> 7;
+        }
+        buffer.put((byte) value);
+    }
+
+
+    // Checks the magic bytes and the version. Returns the base count of the journal.
+    private static long checkHeader(ByteBuffer header, Path path) throws IOException {
+        if (header.limit() < HEADER_SIZE) {
+            throw new IOException("Not a command journal: " + path);
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                throw new IOException("Not a command journal: " + path);
+            }
+        }
+        if (header.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported command journal version: " + header.get(MAGIC.length));
+        }
+        return header.getLong(MAGIC.length + 1);
+    }
+
+    // Walks the commands of an existing journal. Returns its base count, the length up to the end of the
+    // last complete command and the number of complete commands.
+    private static long[] scan(Path path) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = reader.size();
+            MappedByteBuffer window = reader.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, fileSize));
+            long baseCount = checkHeader(window, path);
+
+            long windowStart = 0;
+            int position = HEADER_SIZE;
+            long count = 0;
+            while (true) {
+                if (window.limit() - position < BinaryCommandLog.MAX_COMMAND_SIZE
+                        && windowStart + window.limit() < fileSize) {
+                    windowStart += position;
+                    window = reader.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(WINDOW_SIZE, fileSize - windowStart));
+                    position = 0;
+                }
+                int end = commandEnd(window, position);
+                if (end < 0) {
+                    return new long[] {baseCount, windowStart + position, count};
+                }
+                position = end;
+                count++;
+            }
+        }
+    }
+
+    // Returns where the command at the position ends, or -1 if it is cut off or not a command.
+    private static int commandEnd(ByteBuffer window, int position) {
+        if (position >= window.limit()) {
+            return -1;
+        }
+        int opcode = window.get(position++);
+        if (opcode < Commands.CREATE_PARKING_LOT || opcode >= Commands.OPCODE_COUNT) {
+            return -1;
+        }
+        for (int argument = 0; argument < BinaryCommandLog.argumentCount(opcode); argument++) {
+            byte b;
+            do {
+                if (position >= window.limit()) {
+                    return -1;
+                }
+                b = window.get(position++);
+            } while (b < 0);
+        }
+        return position;
+    }
+}
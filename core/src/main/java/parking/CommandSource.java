@@ -0,0 +1,14 @@
+package parking;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+/**
+ * A stream of parsed commands, decoded in batches into parallel int arrays.
+ */
+public interface CommandSource extends Closeable {
+
+    // Parses up to opcodes.length commands into the arrays. Returns how many were parsed, 0 at the end.
+    int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException;
+}
@@ -0,0 +1,120 @@
+package parking;
+
+/**
+ * Opcodes of the input commands and their dispatch onto a ParkingEngine.
+ * Every reader (text, mapped, binary) turns a command into an opcode and up to two ints.
+ */
+public final class Commands {
+    public static final int CREATE_PARKING_LOT = 0;
+    public static final int ADD_TRUCK = 1;
+    public static final int READY = 2;
+    public static final int LOAD = 3;
+    public static final int COUNT = 4;
+    public static final int COUNT_RANGE = 5;
+    public static final int DELETE_PARKING_LOT = 6;
+
+    // Number of opcodes. They run from 0 to OPCODE_COUNT - 1.
+    public static final int OPCODE_COUNT = 7;
+
+    // Marks a line that is not a known command. It is skipped.
+    public static final int UNKNOWN = -1;
+
+
+    private Commands() {
+    }
+
+
+    // Returns the opcode of a command name.
+    public static int opcodeOf(String command) {
+        switch (command) {
+            case "create_parking_lot":
+                return CREATE_PARKING_LOT;
+            case "add_truck":
+                return ADD_TRUCK;
+            case "ready":
+                return READY;
+            case "load":
+                return LOAD;
+            case "count":
+                return COUNT;
+            case "count_range":
+                return COUNT_RANGE;
+            case "delete_parking_lot":
+                return DELETE_PARKING_LOT;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+
+    // Returns the command name of an opcode, the inverse of opcodeOf.
+    public static String nameOf(int opcode) {
+        switch (opcode) {
+            case CREATE_PARKING_LOT:
+                return "create_parking_lot";
+            case ADD_TRUCK:
+                return "add_truck";
+            case READY:
+                return "ready";
+            case LOAD:
+                return "load";
+            case COUNT:
+                return "count";
+            case COUNT_RANGE:
+                return "count_range";
+            case DELETE_PARKING_LOT:
+                return "delete_parking_lot";
+            default:
+                return "unknown";
+        }
+    }
+
+
+    // Returns true if the command writes an output line.
+    public static boolean hasOutput(int opcode) {
+        return opcode >= ADD_TRUCK && opcode <= COUNT_RANGE;
+    }
+
+
+    // Runs one command on the engine. Commands with an output write exactly one line into the sink.
+    public static void execute(ParkingEngine engine, int opcode, int first, int second, ResultSink sink) {
+        if (ParkingMetrics.ENABLED) {
+            long start = System.nanoTime();
+            dispatch(engine, opcode, first, second, sink);
+            ParkingMetrics.recordLatency(opcode, System.nanoTime() - start);
+        } else {
+            dispatch(engine, opcode, first, second, sink);
+        }
+    }
+
+    private static void dispatch(ParkingEngine engine, int opcode, int first, int second, ResultSink sink) {
+        switch (opcode) {
+            case CREATE_PARKING_LOT:
+                engine.create_parking_lot(first, second);
+                break;
+            case ADD_TRUCK:
+                engine.add_truck(first, second, sink);
+                sink.endLine();
+                break;
+            case READY:
+                engine.ready(first, sink);
+                sink.endLine();
+                break;
+            case LOAD:
+                engine.load(first, second, sink);
+                sink.endLine();
+                break;
+            case COUNT:
+                engine.count(first, sink);
+                sink.endLine();
+                break;
+            case COUNT_RANGE:
+                engine.count_range(first, second, sink);
+                sink.endLine();
+                break;
+            case DELETE_PARKING_LOT:
+                engine.delete_parking_lot(first);
+                break;
+        }
+    }
+}
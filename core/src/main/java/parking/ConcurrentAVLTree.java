@@ -0,0 +1,284 @@
+package parking;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+
+
+/**
+ * A thread-safe parking network. The commands that change the network run one at a time under the
+ * write lock of a StampedLock, while count and the lookups read the tree optimistically and only take
+ * the read lock when a writer got in their way, so any number of readers can run next to each other.
+ *
+ * Every change to a lot's queues also updates the aggregates on the path to the root, so the write
+ * lock is what guards the queues as well. The lookups return capacities instead of ParkingLots,
+ * so no reader ever holds on to a lot a writer is changing.
+ */
+public class ConcurrentAVLTree implements ParkingEngine {
+    // A consistent tree is never this deep, so a walk that goes deeper followed links a writer was changing.
+    private static final int MAX_DEPTH = 128;
+
+    private static final RuntimeException TORN_READ = new IllegalStateException("Optimistic read ran off the tree");
+
+    private final AVLTree tree;
+    private final StampedLock lock = new StampedLock();
+
+    // The bounded walks below as TruckCounts, for countRange. Only used inside read.
+    private final TruckCounts unlockedCounts = new TruckCounts() {
+        public int countAbove(int capacity) {
+            return ConcurrentAVLTree.this.countAbove(capacity);
+        }
+
+        public int totalTrucks() {
+            Node root = tree.getRoot();
+            return (root == null) ? 0 : root.subtreeTrucks;
+        }
+    };
+
+
+    public ConcurrentAVLTree() {
+        this(new AVLTree());
+    }
+
+    // Guards the given tree, which must not be used directly from now on.
+    public ConcurrentAVLTree(AVLTree tree) {
+        this.tree = tree;
+    }
+
+
+    public void create_parking_lot(int capacity, int truckLimit) {
+        long stamp = lock.writeLock();
+        try {
+            tree.create_parking_lot(capacity, truckLimit);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void create_parking_lots(int[] capacities, int[] truckLimits, int from, int count) {
+        long stamp = lock.writeLock();
+        try {
+            tree.create_parking_lots(capacities, truckLimits, from, count);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void delete(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            tree.delete(capacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void delete_parking_lot(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            tree.delete_parking_lot(capacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        long stamp = lock.writeLock();
+        try {
+            tree.add_truck(truck_id, capacity, sink);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void add_trucks(int[] truck_ids, int[] capacities, int from, int count, ResultSink sink) {
+        long stamp = lock.writeLock();
+        try {
+            tree.add_trucks(truck_ids, capacities, from, count, sink);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void ready(int capacity, ResultSink sink) {
+        long stamp = lock.writeLock();
+        try {
+            tree.ready(capacity, sink);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void load(int capacity, int loadAmount, ResultSink sink) {
+        long stamp = lock.writeLock();
+        try {
+            tree.load(capacity, loadAmount, sink);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    public void count(int capacity, ResultSink sink) {
+        sink.writeInt(count(capacity));
+    }
+
+    // Returns the number of trucks in the ParkingLots with a higher capacity.
+    public int count(int capacity) {
+        return read(() -> countAbove(capacity));
+    }
+
+    public void count_range(int low, int high, ResultSink sink) {
+        sink.writeInt(count_range(low, high));
+    }
+
+    // Returns the number of trucks in the ParkingLots with a capacity between low and high, both inclusive.
+    public int count_range(int low, int high) {
+        // Both counts come from the same read, so they see the same version of the tree.
+        return read(() -> unlockedCounts.countRange(low, high));
+    }
+
+    // Returns the capacity of the biggest smaller ParkingLot that is not full, or -1 if there is none.
+    public int smallerBiggest(int capacity) {
+        return read(() -> capacityOf(highestBelowNotFull(tree.getRoot(), capacity, 0)));
+    }
+
+    // Returns the capacity of the smallest bigger ParkingLot with a ready truck, or -1 if there is none.
+    public int smallestBiggerHasReady(int capacity) {
+        return read(() -> capacityOf(lowestAbove(tree.getRoot(), capacity, true, 0)));
+    }
+
+    // Returns the capacity of the smallest bigger ParkingLot with a waiting truck, or -1 if there is none.
+    public int smallestBiggerHasWaiting(int capacity) {
+        return read(() -> capacityOf(lowestAbove(tree.getRoot(), capacity, false, 0)));
+    }
+
+
+    // Runs a query without locking and keeps its result if no writer ran meanwhile.
+    // Otherwise, or if the query saw a half-changed tree, it is run again under the read lock.
+    private int read(IntSupplier query) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int result = query.getAsInt();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Retried below.
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return query.getAsInt();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int capacityOf(Node node) {
+        return (node == null) ? -1 : node.parkingLot.getCapacity();
+    }
+
+
+    // Same walk as AVLTree.countAbove, with a bound on its length.
+    private int countAbove(int capacity) {
+        int totalCount = 0;
+        Node node = tree.getRoot();
+
+        for (int depth = 0; node != null; depth++) {
+            if (depth == MAX_DEPTH) {
+                throw TORN_READ;
+            }
+            if (node.parkingLot.getCapacity() > capacity) {
+                totalCount = totalCount + node.parkingLot.getOccupiedCapacity()
+                        + ((node.right == null) ? 0 : node.right.subtreeTrucks);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return totalCount;
+    }
+
+    // Finds the biggest lot below the capacity that is not full.
+    // Subtrees without a lot that is not full are skipped.
+    private Node highestBelowNotFull(Node node, int capacity, int depth) {
+        if (node == null || !node.subtreeHasFree) {
+            return null;
+        }
+        if (depth == MAX_DEPTH) {
+            throw TORN_READ;
+        }
+        if (node.parkingLot.getCapacity() >= capacity) {
+            return highestBelowNotFull(node.left, capacity, depth + 1);
+        }
+
+        Node found = highestBelowNotFull(node.right, capacity, depth + 1);
+        if (found != null) {
+            return found;
+        }
+        if (tree.isNotFull(node.parkingLot)) {
+            return node;
+        }
+        return highestBelowNotFull(node.left, capacity, depth + 1);
+    }
+
+    // Finds the smallest lot above the capacity with a ready truck, or with a waiting one if ready is false.
+    // Subtrees without such a lot are skipped.
+    private Node lowestAbove(Node node, int capacity, boolean ready, int depth) {
+        if (node == null || !(ready ? node.subtreeHasReady : node.subtreeHasWaiting)) {
+            return null;
+        }
+        if (depth == MAX_DEPTH) {
+            throw TORN_READ;
+        }
+        if (node.parkingLot.getCapacity() <= capacity) {
+            return lowestAbove(node.right, capacity, ready, depth + 1);
+        }
+
+        Node found = lowestAbove(node.left, capacity, ready, depth + 1);
+        if (found != null) {
+            return found;
+        }
+        if (ready ? tree.hasReady(node.parkingLot) : tree.hasWaiting(node.parkingLot)) {
+            return node;
+        }
+        return lowestAbove(node.right, capacity, ready, depth + 1);
+    }
+
+
+    // Checks the height and the aggregates of every node against its lot and children.
+    // Throws an IllegalStateException on the first node that is off.
+    void verify() {
+        long stamp = lock.readLock();
+        try {
+            verify(tree.getRoot());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void verify(Node node) {
+        if (node == null) {
+            return;
+        }
+        verify(node.left);
+        verify(node.right);
+
+        ParkingLot parkingLot = node.parkingLot;
+        int trucks = parkingLot.getOccupiedCapacity();
+        if (trucks != parkingLot.getWaitingCount() + parkingLot.getReadyCount() || trucks > parkingLot.getTruckLimit()) {
+            throw new IllegalStateException("Lot " + parkingLot.getCapacity() + " holds " + trucks + " trucks");
+        }
+
+        int leftHeight = (node.left == null) ? 0 : node.left.height;
+        int rightHeight = (node.right == null) ? 0 : node.right.height;
+        int leftTrucks = (node.left == null) ? 0 : node.left.subtreeTrucks;
+        int rightTrucks = (node.right == null) ? 0 : node.right.subtreeTrucks;
+        if (node.height != 1 + Math.max(leftHeight, rightHeight) || Math.abs(leftHeight - rightHeight) > 1
+                || node.subtreeTrucks != leftTrucks + trucks + rightTrucks) {
+            throw new IllegalStateException("Node of lot " + parkingLot.getCapacity() + " is out of date");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package parking;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * A NodeStore in a direct (off-heap) ByteBuffer. Every node is one fixed-size record.
+ */
+public class DirectNodeStore extends NodeStore {
+    private static final int CAPACITY = 0;
+    private static final int TRUCK_LIMIT = 4;
+    private static final int OCCUPIED = 8;
+    private static final int LEFT = 12;
+    private static final int RIGHT = 16;
+    private static final int PARENT = 20;
+    private static final int SUBTREE_TRUCKS = 24;
+    private static final int HEIGHT = 28;
+    private static final int FLAGS = 29;
+    private static final int RECORD_SIZE = 32;
+
+    private ByteBuffer buffer;
+
+
+    public DirectNodeStore(int initialCapacity) {
+        buffer = allocate(Math.max(initialCapacity, 16));
+    }
+
+
+    @Override
+    protected int capacity() {
+        return buffer.capacity() / RECORD_SIZE;
+    }
+
+    @Override
+    protected void grow(int newCapacity) {
+        ByteBuffer bigger = allocate(newCapacity);
+        buffer.clear();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+
+    private ByteBuffer allocate(int records) {
+        return ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+
+    @Override
+    public int getCapacity(int node) {
+        return buffer.getInt(node * RECORD_SIZE + CAPACITY);
+    }
+
+    @Override
+    public void setCapacity(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + CAPACITY, value);
+    }
+
+    @Override
+    public int getTruckLimit(int node) {
+        return buffer.getInt(node * RECORD_SIZE + TRUCK_LIMIT);
+    }
+
+    @Override
+    public void setTruckLimit(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + TRUCK_LIMIT, value);
+    }
+
+    @Override
+    public int getOccupied(int node) {
+        return buffer.getInt(node * RECORD_SIZE + OCCUPIED);
+    }
+
+    @Override
+    public void setOccupied(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + OCCUPIED, value);
+    }
+
+    @Override
+    public int getLeft(int node) {
+        return buffer.getInt(node * RECORD_SIZE + LEFT);
+    }
+
+    @Override
+    public void setLeft(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + LEFT, value);
+    }
+
+    @Override
+    public int getRight(int node) {
+        return buffer.getInt(node * RECORD_SIZE + RIGHT);
+    }
+
+    @Override
+    public void setRight(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + RIGHT, value);
+    }
+
+    @Override
+    public int getParent(int node) {
+        return buffer.getInt(node * RECORD_SIZE + PARENT);
+    }
+
+    @Override
+    public void setParent(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + PARENT, value);
+    }
+
+    @Override
+    public int getSubtreeTrucks(int node) {
+        return buffer.getInt(node * RECORD_SIZE + SUBTREE_TRUCKS);
+    }
+
+    @Override
+    public void setSubtreeTrucks(int node, int value) {
+        buffer.putInt(node * RECORD_SIZE + SUBTREE_TRUCKS, value);
+    }
+
+    @Override
+    public int getHeight(int node) {
+        return buffer.get(node * RECORD_SIZE + HEIGHT);
+    }
+
+    @Override
+    public void setHeight(int node, int value) {
+        buffer.put(node * RECORD_SIZE + HEIGHT, (byte) value);
+    }
+
+    @Override
+    public int getFlags(int node) {
+        return buffer.get(node * RECORD_SIZE + FLAGS);
+    }
+
+    @Override
+    public void setFlags(int node, int value) {
+        buffer.put(node * RECORD_SIZE + FLAGS, (byte) value);
+    }
+}
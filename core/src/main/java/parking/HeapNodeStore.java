@@ -0,0 +1,151 @@
+package parking;
+
+/**
+ * A NodeStore on primitive arrays, one array per field.
+ */
+public class HeapNodeStore extends NodeStore {
+    private int[] capacities;
+    private int[] truckLimits;
+    private int[] occupied;
+    private int[] lefts;
+    private int[] rights;
+    private int[] parents;
+    private int[] subtreeTrucks;
+    private byte[] heights;
+    private byte[] flags;
+
+
+    public HeapNodeStore(int initialCapacity) {
+        int length = Math.max(initialCapacity, 16);
+        capacities = new int[length];
+        truckLimits = new int[length];
+        occupied = new int[length];
+        lefts = new int[length];
+        rights = new int[length];
+        parents = new int[length];
+        subtreeTrucks = new int[length];
+        heights = new byte[length];
+        flags = new byte[length];
+    }
+
+
+    @Override
+    protected int capacity() {
+        return capacities.length;
+    }
+
+    @Override
+    protected void grow(int newCapacity) {
+        capacities = copyOf(capacities, newCapacity);
+        truckLimits = copyOf(truckLimits, newCapacity);
+        occupied = copyOf(occupied, newCapacity);
+        lefts = copyOf(lefts, newCapacity);
+        rights = copyOf(rights, newCapacity);
+        parents = copyOf(parents, newCapacity);
+        subtreeTrucks = copyOf(subtreeTrucks, newCapacity);
+
+        byte[] biggerHeights = new byte[newCapacity];
+        System.arraycopy(heights, 0, biggerHeights, 0, heights.length);
+        heights = biggerHeights;
+        byte[] biggerFlags = new byte[newCapacity];
+        System.arraycopy(flags, 0, biggerFlags, 0, flags.length);
+        flags = biggerFlags;
+    }
+
+    private int[] copyOf(int[] array, int length) {
+        int[] bigger = new int[length];
+        System.arraycopy(array, 0, bigger, 0, array.length);
+        return bigger;
+    }
+
+
+    @Override
+    public int getCapacity(int node) {
+        return capacities[node];
+    }
+
+    @Override
+    public void setCapacity(int node, int value) {
+        capacities[node] = value;
+    }
+
+    @Override
+    public int getTruckLimit(int node) {
+        return truckLimits[node];
+    }
+
+    @Override
+    public void setTruckLimit(int node, int value) {
+        truckLimits[node] = value;
+    }
+
+    @Override
+    public int getOccupied(int node) {
+        return occupied[node];
+    }
+
+    @Override
+    public void setOccupied(int node, int value) {
+        occupied[node] = value;
+    }
+
+    @Override
+    public int getLeft(int node) {
+        return lefts[node];
+    }
+
+    @Override
+    public void setLeft(int node, int value) {
+        lefts[node] = value;
+    }
+
+    @Override
+    public int getRight(int node) {
+        return rights[node];
+    }
+
+    @Override
+    public void setRight(int node, int value) {
+        rights[node] = value;
+    }
+
+    @Override
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    public void setParent(int node, int value) {
+        parents[node] = value;
+    }
+
+    @Override
+    public int getSubtreeTrucks(int node) {
+        return subtreeTrucks[node];
+    }
+
+    @Override
+    public void setSubtreeTrucks(int node, int value) {
+        subtreeTrucks[node] = value;
+    }
+
+    @Override
+    public int getHeight(int node) {
+        return heights[node];
+    }
+
+    @Override
+    public void setHeight(int node, int value) {
+        heights[node] = (byte) value;
+    }
+
+    @Override
+    public int getFlags(int node) {
+        return flags[node];
+    }
+
+    @Override
+    public void setFlags(int node, int value) {
+        flags[node] = (byte) value;
+    }
+}
@@ -0,0 +1,113 @@
+package parking;
+
+/**
+ * A set of ints in [0, size) as a hierarchy of 64-bit words. Level 0 has one bit per int, and every bit
+ * of a higher level tells whether the word below it has any bit set. next and previous climb until a word
+ * has a bit on the right side and go back down, one numberOfTrailingZeros or numberOfLeadingZeros per
+ * level, so they take O(log_64 size) word reads.
+ */
+public class HierarchicalBitmap {
+    private final int size;
+    // levels[0] is the bottom level, the last one is a single word.
+    private final long[][] levels;
+
+
+    public HierarchicalBitmap(int size) {
+        this.size = size;
+        int count = 1;
+        for (int words = wordsFor(size); words > 1; words = wordsFor(words)) {
+            count++;
+        }
+        levels = new long[count][];
+        int bits = size;
+        for (int level = 0; level < count; level++) {
+            levels[level] = new long[wordsFor(bits)];
+            bits = levels[level].length;
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+
+    public boolean get(int index) {
+        return (levels[0][index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void set(int index) {
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            long before = level[word];
+            level[word] = before | (1L << index);
+            if (before != 0) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    public void clear(int index) {
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            level[word] &= ~(1L << index);
+            if (level[word] != 0) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    // Returns the smallest int in the set at least the index, or -1 if there is none.
+    public int next(int index) {
+        if (index >= size) {
+            return -1;
+        }
+        index = Math.max(index, 0);
+        int level = 0;
+        while (true) {
+            long bits = levels[level][index >>> 6] & (-1L << index);
+            if (bits != 0) {
+                index = (index & ~63) | Long.numberOfTrailingZeros(bits);
+                break;
+            }
+            index = (index >>> 6) + 1;
+            level++;
+            if (level == levels.length || (index >>> 6) >= levels[level].length) {
+                return -1;
+            }
+        }
+        while (level > 0) {
+            level--;
+            index = (index << 6) | Long.numberOfTrailingZeros(levels[level][index]);
+        }
+        return index;
+    }
+
+    // Returns the biggest int in the set at most the index, or -1 if there is none.
+    public int previous(int index) {
+        // An empty bitmap has no last index to start from.
+        if (index < 0 || size == 0) {
+            return -1;
+        }
+        index = Math.min(index, size - 1);
+        int level = 0;
+        while (true) {
+            long bits = levels[level][index >>> 6] & (-1L >>> (63 - (index & 63)));
+            if (bits != 0) {
+                index = (index & ~63) | (63 - Long.numberOfLeadingZeros(bits));
+                break;
+            }
+            index = (index >>> 6) - 1;
+            level++;
+            if (level == levels.length || index < 0) {
+                return -1;
+            }
+        }
+        while (level > 0) {
+            level--;
+            index = (index << 6) | (63 - Long.numberOfLeadingZeros(levels[level][index]));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,54 @@
+package parking;
+
+/**
+ * The count, mean, percentiles and maximum of a Histogram at one instant.
+ * JMX shows it as a composite value with one item per getter.
+ */
+public class HistogramSummary {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+
+    public HistogramSummary(Histogram histogram) {
+        count = histogram.getCount();
+        mean = histogram.getMean();
+        p50 = histogram.percentile(0.5);
+        p99 = histogram.percentile(0.99);
+        p999 = histogram.percentile(0.999);
+        max = histogram.getMax();
+    }
+
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, mean %.1f, p50 %d, p99 %d, p999 %d, max %d", count, mean, p50, p99, p999, max);
+    }
+}
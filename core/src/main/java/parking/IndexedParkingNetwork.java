@@ -0,0 +1,147 @@
+package parking;
+
+/**
+ * A parking network that runs the commands on a LotIndex, so the same routing works on any index.
+ * Every change to a lot's trucks is followed by an update of the lot in the index.
+ * AVLTree is a LotIndex itself and runs its add_truck, ready and delete_parking_lot through one of these
+ * over its own nodes, so this is the only copy of those commands for lots of Truck objects.
+ */
+public class IndexedParkingNetwork implements ParkingEngine {
+    private final LotIndex index;
+    private final LoadPlan loadPlan = new LoadPlan();
+    private final LoadLots loadLots = new IndexLoadLots();
+
+
+    public IndexedParkingNetwork(LotIndex index) {
+        this.index = index;
+    }
+
+
+    public void create_parking_lot(int capacity, int truckLimit) {
+        index.insert(new ParkingLot(capacity, truckLimit));
+    }
+
+    public void delete(int capacity) {
+        index.remove(capacity);
+    }
+
+    // Removes the lot and moves its trucks into the smaller lots, see ParkingEngine.delete_parking_lot.
+    public void delete_parking_lot(int capacity) {
+        ParkingLot removed = index.remove(capacity);
+        if (removed != null) {
+            index.rehome(removed, capacity);
+        }
+    }
+
+
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        ParkingLot lotChosen = index.floorNotFull(capacity);
+        if (lotChosen == null) {
+            sink.writeInt(-1);
+            ParkingMetrics.recordMiss(Commands.ADD_TRUCK);
+            return;
+        }
+        addToWaiting(new Truck(truck_id, capacity), lotChosen);
+        sink.writeInt(lotChosen.getCapacity());
+    }
+
+    public void ready(int capacity, ResultSink sink) {
+        ParkingLot lotChosen = index.ceilingWithWaiting(capacity);
+        if (lotChosen == null) {
+            sink.writeInt(-1);
+            ParkingMetrics.recordMiss(Commands.READY);
+            return;
+        }
+        Truck truck = lotChosen.waiting.dequeue();
+        lotChosen.ready.enqueue(truck);
+        index.update(lotChosen);
+
+        sink.writeInt(truck.getId());
+        sink.writeInt(lotChosen.getCapacity());
+    }
+
+    // Same distribution as AVLTree.load, walking the ready lots through the index.
+    public void load(int capacity, int loadAmount, ResultSink sink) {
+        loadPlan.run(loadLots, capacity, loadAmount, sink);
+    }
+
+    // The lots a load walks, found with ceilingWithReady.
+    private final class IndexLoadLots implements LoadLots {
+        private ParkingLot lotChosen;
+
+        @Override
+        public boolean seekReady(int capacity) {
+            lotChosen = index.ceilingWithReady(capacity);
+            return lotChosen != null;
+        }
+
+        @Override
+        public boolean nextReady() {
+            int next = lotChosen.getCapacity();
+            lotChosen = (next == Integer.MAX_VALUE) ? null : index.ceilingWithReady(next + 1);
+            return lotChosen != null;
+        }
+
+        @Override
+        public int lotCapacity() {
+            return lotChosen.getCapacity();
+        }
+
+        @Override
+        public boolean hasReady() {
+            return lotChosen.getReadyCount() != 0;
+        }
+
+        @Override
+        public int readyCapacity() {
+            return lotChosen.ready.peek().getCapacity();
+        }
+
+        @Override
+        public int readyLoad() {
+            return lotChosen.ready.peek().getLoad();
+        }
+
+        @Override
+        public void takeReady(int load, LoadPlan plan) {
+            Truck truck = lotChosen.ready.dequeue();
+            truck.setLoad(load);
+            plan.addTruck(truck, truck.getCapacity() - load);
+        }
+
+        @Override
+        public void tookReady(int count) {
+            lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() - count);
+            index.update(lotChosen);
+        }
+
+        // Each truck goes to the best fit for its space.
+        @Override
+        public void place(LoadPlan plan) {
+            for (int i = 0; i < plan.count; i++) {
+                Truck truck = plan.trucks[i];
+                ParkingLot destination = index.floorNotFull(plan.spaces[i]);
+                if (destination != null) {
+                    addToWaiting(truck, destination);
+                }
+                plan.destinations[i] = (destination == null) ? -1 : destination.getCapacity();
+            }
+        }
+    }
+
+    private void addToWaiting(Truck truck, ParkingLot lotChosen) {
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waiting.enqueue(truck);
+        truck.setInLot(lotChosen);
+        index.update(lotChosen);
+    }
+
+
+    public void count(int capacity, ResultSink sink) {
+        sink.writeInt(index.countAbove(capacity));
+    }
+
+    public void count_range(int low, int high, ResultSink sink) {
+        sink.writeInt(index.countRange(low, high));
+    }
+}
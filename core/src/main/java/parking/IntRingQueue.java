@@ -0,0 +1,68 @@
+package parking;
+
+/**
+ * A FIFO queue of ints on a growable ring buffer.
+ * Enqueue and dequeue allocate nothing unless the buffer has to grow.
+ * The buffer is only allocated by the first enqueue, so empty queues cost no array.
+ */
+public class IntRingQueue {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] items;
+    // items.length - 1, the length is always a power of two.
+    private int mask;
+    private int head = 0;
+    private int size = 0;
+
+
+    public IntRingQueue() {
+        items = EMPTY;
+        mask = 0;
+    }
+
+    public IntRingQueue(int initialCapacity) {
+        int length = Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1;
+        items = new int[length];
+        mask = length - 1;
+    }
+
+
+    public void enqueue(int value) {
+        if (size == items.length) {
+            grow();
+        }
+        items[(head + size) & mask] = value;
+        size++;
+    }
+
+    public int dequeue() {
+        int removed = items[head];
+        head = (head + 1) & mask;
+        size--;
+        return removed;
+    }
+
+    public int peek() {
+        return items[head];
+    }
+
+    // Returns the value at the given position, 0 being the front of the queue.
+    public int get(int index) {
+        return items[(head + index) & mask];
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    private void grow() {
+        int[] bigger = new int[Math.max(items.length * 2, 4)];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = items[(head + i) & mask];
+        }
+        items = bigger;
+        mask = bigger.length - 1;
+        head = 0;
+    }
+}
@@ -0,0 +1,39 @@
+package parking;
+
+/**
+ * The lots of an engine as a load walks them. LoadPlan.run holds the load itself: which lots it visits,
+ * how much goes into each truck, when it stops and what it writes. An engine only says how to find its
+ * lots with a ready truck, how to take a truck out and how to put the trucks of the plan back.
+ *
+ * The lot a load works on is kept by the implementation, so it can be a node, an array index or a lot.
+ */
+interface LoadLots {
+
+    // Moves to the smallest lot with a capacity at least the given one that has a ready truck.
+    // Returns false if there is none.
+    boolean seekReady(int capacity);
+
+    // Moves on to the next bigger lot that has a ready truck. Returns false if there is none.
+    boolean nextReady();
+
+    // Capacity of the current lot.
+    int lotCapacity();
+
+    // Returns true if the current lot has a ready truck.
+    boolean hasReady();
+
+    // Capacity and load of the first ready truck of the current lot.
+    int readyCapacity();
+
+    int readyLoad();
+
+    // Takes the first ready truck out of the current lot with its new load and adds it to the plan.
+    // The occupancy is left to tookReady.
+    void takeReady(int load, LoadPlan plan);
+
+    // Called once the trucks of the plan were taken out of the current lot.
+    void tookReady(int count);
+
+    // Adds the trucks of the plan back in order and sets their destinations, -1 for a truck that leaves.
+    void place(LoadPlan plan);
+}
@@ -0,0 +1,238 @@
+package parking;
+
+import java.util.Arrays;
+
+
+/**
+ * The trucks a load takes out of one lot, already filled, in the order they leave it.
+ * run is the load of every engine: it fills all the trucks of a lot before it adds any of them back,
+ * then has the engine place them in that order.
+ *
+ * While the trucks of one lot are placed, lots only fill up, so the best fit for a space can only move
+ * to smaller lots and stays put until its lot is full. The plan remembers the lot found for each space,
+ * so trucks with the same space share one search. It also keeps the lots it found, whose paths are
+ * only updated once all the trucks are placed.
+ */
+final class LoadPlan {
+    int count = 0;
+    int[] ids = new int[16];
+    int[] spaces = new int[16];
+    // The lot each truck went to, or -1.
+    int[] destinations = new int[16];
+    // The trucks themselves: Truck objects for AVLTree, TruckStore slots for PrimitiveTruckTree.
+    Truck[] trucks = new Truck[16];
+    int[] slots = new int[16];
+
+    // The lot found for a space, in an open addressing table. A null lot means there is none.
+    private int[] keys = new int[16];
+    private Node[] found = new Node[16];
+    private boolean[] taken = new boolean[16];
+    private int[] takenIndexes = new int[16];
+    private int takenCount = 0;
+
+    private Node[] touched = new Node[16];
+    private int touchedCount = 0;
+
+
+    // Runs a load on the lots and writes its output. The lots with a ready truck are visited from the
+    // capacity up, and the ready trucks of each are filled and placed, until the load runs out.
+    void run(LoadLots lots, int capacity, int loadAmount, ResultSink sink) {
+        int loadLeft = loadAmount;
+        int trucksMoved = 0;
+
+        // Is true for the first iteration.
+        boolean firstIteration = true;
+        boolean found = lots.seekReady(capacity);
+
+        while (loadLeft != 0) {
+
+            // Move on to the next candidate if the lot's ready section is empty.
+            if (found && !lots.hasReady()) {
+                found = lots.nextReady();
+            }
+
+            // If no ParkingLot is found.
+            if (!found) {
+
+                // If condition is needed as no ParkingLot may be found after some distribution.
+                if (firstIteration) {
+                    sink.writeInt(-1);
+                    ParkingMetrics.recordMiss(Commands.LOAD);
+                    ParkingMetrics.recordLoad(0);
+                    return;
+                }
+                break;
+            }
+
+            clear();
+            loadLeft = takeFilledTrucks(lots, loadLeft);
+            if (count == 0) {
+                break;
+            }
+            lots.tookReady(count);
+            lots.place(this);
+
+            // Output
+            for (int i = 0; i < count; i++) {
+                if (!firstIteration) {
+                    sink.writeSeparator();
+                }
+                sink.writeInt(ids[i]);
+                sink.writeInt(destinations[i]);
+                if (destinations[i] == -1) {
+                    ParkingMetrics.recordMiss(Commands.LOAD);
+                }
+                firstIteration = false;
+            }
+            trucksMoved += count;
+        }
+
+        clear();
+        ParkingMetrics.recordLoad(trucksMoved);
+    }
+
+    // Fills the trucks at the front of the current lot's ready section and moves them into the plan,
+    // stopping where the load one truck at a time would. Returns the load left.
+    private int takeFilledTrucks(LoadLots lots, int loadLeft) {
+        int lotCapacity = lots.lotCapacity();
+        while (lots.hasReady()) {
+            int truckCapacity = lots.readyCapacity();
+            int load = lots.readyLoad();
+            int space = truckCapacity - load;
+            int howMuchToFill;
+
+            // Calculate how much to fill.
+            if (space < loadLeft) {
+                howMuchToFill = Math.min(lotCapacity, space);
+            } else {
+                howMuchToFill = Math.min(loadLeft, lotCapacity);
+            }
+
+            if (howMuchToFill == 0) {
+                break;
+            }
+
+            // Fill the truck
+            loadLeft = loadLeft - howMuchToFill;
+            load = load + howMuchToFill;
+
+            // Empty the truck if it is full
+            if (load == truckCapacity) {
+                load = 0;
+            }
+            lots.takeReady(load, this);
+        }
+        return loadLeft;
+    }
+
+
+    // Forgets the trucks and the remembered lots.
+    void clear() {
+        Arrays.fill(trucks, 0, count, null);
+        count = 0;
+        for (int i = 0; i < takenCount; i++) {
+            taken[takenIndexes[i]] = false;
+            found[takenIndexes[i]] = null;
+        }
+        takenCount = 0;
+    }
+
+    void addTruck(Truck truck, int space) {
+        add(truck.getId(), space);
+        trucks[count - 1] = truck;
+    }
+
+    void addSlot(int slot, int id, int space) {
+        add(id, space);
+        slots[count - 1] = slot;
+    }
+
+    private void add(int id, int space) {
+        if (count == ids.length) {
+            int length = count * 2;
+            ids = Arrays.copyOf(ids, length);
+            spaces = Arrays.copyOf(spaces, length);
+            destinations = Arrays.copyOf(destinations, length);
+            trucks = Arrays.copyOf(trucks, length);
+            slots = Arrays.copyOf(slots, length);
+        }
+        ids[count] = id;
+        spaces[count] = space;
+        count++;
+    }
+
+
+    // Returns true if a lot, or the lack of one, is remembered for the space.
+    boolean knows(int space) {
+        return taken[indexOf(space)];
+    }
+
+    Node lotFor(int space) {
+        return found[indexOf(space)];
+    }
+
+    void remember(int space, Node node) {
+        // The table is kept at most half full.
+        if ((takenCount + 1) * 2 > keys.length) {
+            grow();
+        }
+        int index = indexOf(space);
+        if (!taken[index]) {
+            taken[index] = true;
+            keys[index] = space;
+            takenIndexes[takenCount++] = index;
+        }
+        found[index] = node;
+    }
+
+    // Returns the index of the space, or of the free entry it would go to.
+    private int indexOf(int space) {
+        int mask = keys.length - 1;
+        int hash = space * 0x9E3779B9;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (taken[index] && keys[index] != space) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Node[] oldFound = found;
+        int[] oldIndexes = Arrays.copyOf(takenIndexes, takenCount);
+        int length = oldKeys.length * 2;
+        keys = new int[length];
+        found = new Node[length];
+        taken = new boolean[length];
+        takenIndexes = new int[length];
+        takenCount = 0;
+        for (int oldIndex : oldIndexes) {
+            int index = indexOf(oldKeys[oldIndex]);
+            taken[index] = true;
+            keys[index] = oldKeys[oldIndex];
+            found[index] = oldFound[oldIndex];
+            takenIndexes[takenCount++] = index;
+        }
+    }
+
+
+    void touch(Node node) {
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+        }
+        touched[touchedCount++] = node;
+    }
+
+    int touchedCount() {
+        return touchedCount;
+    }
+
+    Node touched(int i) {
+        return touched[i];
+    }
+
+    void clearTouched() {
+        Arrays.fill(touched, 0, touchedCount, null);
+        touchedCount = 0;
+    }
+}
@@ -0,0 +1,308 @@
+package parking;
+
+/**
+ * An in-order cursor over the ParkingLots of an AVLTree.
+ * Seeks to a capacity once with a single descent, then moves to the neighbouring lots
+ * through the parent and child links instead of searching again from the root.
+ * A cursor is only valid until the next insert or delete on its tree.
+ */
+public class LotCursor {
+    private static final int FREE = 0;
+    private static final int WAITING = 1;
+    private static final int READY = 2;
+
+    private final AVLTree tree;
+    private Node current;
+
+    // Nodes the last matching move visited. Only counted when metrics are on.
+    private int steps = 0;
+
+
+    LotCursor(AVLTree tree) {
+        this.tree = tree;
+    }
+
+
+    // Returns true if the cursor is on a ParkingLot.
+    public boolean isValid() {
+        return current != null;
+    }
+
+    public ParkingLot getParkingLot() {
+        return current.parkingLot;
+    }
+
+    // Number of nodes the last nextWithReady, nextWithWaiting or previousNotFull visited.
+    int getSteps() {
+        return steps;
+    }
+
+    Node getNode() {
+        return current;
+    }
+
+
+    // Moves to the smallest ParkingLot with a capacity greater than or equal to the given one.
+    public boolean seekCeiling(int capacity) {
+        Node node = tree.getRoot();
+        current = null;
+        while (node != null) {
+            if (node.parkingLot.getCapacity() >= capacity) {
+                current = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return current != null;
+    }
+
+    // Moves to the smallest ParkingLot with a capacity strictly greater than the given one.
+    public boolean seekHigher(int capacity) {
+        Node node = tree.getRoot();
+        current = null;
+        while (node != null) {
+            if (node.parkingLot.getCapacity() > capacity) {
+                current = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return current != null;
+    }
+
+    // Moves to the biggest ParkingLot with a capacity smaller than or equal to the given one.
+    public boolean seekFloor(int capacity) {
+        Node node = tree.getRoot();
+        current = null;
+        while (node != null) {
+            if (node.parkingLot.getCapacity() <= capacity) {
+                current = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return current != null;
+    }
+
+    // Moves to the biggest ParkingLot with a capacity strictly smaller than the given one.
+    public boolean seekLower(int capacity) {
+        Node node = tree.getRoot();
+        current = null;
+        while (node != null) {
+            if (node.parkingLot.getCapacity() < capacity) {
+                current = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return current != null;
+    }
+
+
+    // Moves to the next bigger ParkingLot.
+    public boolean next() {
+        if (current.right != null) {
+            current = current.right;
+            while (current.left != null) {
+                current = current.left;
+            }
+            return true;
+        }
+
+        // Climb until we come up from a left child.
+        Node node = current;
+        while (node.parent != null && node.parent.right == node) {
+            node = node.parent;
+        }
+        current = node.parent;
+        return current != null;
+    }
+
+    // Moves to the next smaller ParkingLot.
+    public boolean previous() {
+        if (current.left != null) {
+            current = current.left;
+            while (current.right != null) {
+                current = current.right;
+            }
+            return true;
+        }
+
+        // Climb until we come up from a right child.
+        Node node = current;
+        while (node.parent != null && node.parent.left == node) {
+            node = node.parent;
+        }
+        current = node.parent;
+        return current != null;
+    }
+
+
+    // Moves to the next bigger ParkingLot whose ready section is not empty.
+    public boolean nextWithReady() {
+        return nextMatching(READY);
+    }
+
+    // Moves to the next bigger ParkingLot whose waiting section is not empty.
+    public boolean nextWithWaiting() {
+        return nextMatching(WAITING);
+    }
+
+    // Moves to the next smaller ParkingLot that is not full.
+    public boolean previousNotFull() {
+        return previousMatching(FREE);
+    }
+
+
+    // Like previousNotFull(), for a walk that fills the lots it passes. The aggregates of the nodes above
+    // the cursor may be stale while it goes, the ones below never are, as they hold no lot it filled.
+    // A node is brought up to date when the cursor climbs out of it, so after the walk only the path from
+    // the last lot to the root is left to update.
+    boolean previousNotFullUpdating() {
+        Node node = current;
+        if (subtreeMatches(node.left, FREE)) {
+            current = lastMatching(node.left, FREE);
+            return true;
+        }
+
+        while (node.parent != null) {
+            tree.updateNode(node);
+            Node parent = node.parent;
+            if (parent.right == node) {
+                if (lotMatches(parent.parkingLot, FREE)) {
+                    current = parent;
+                    return true;
+                }
+                if (subtreeMatches(parent.left, FREE)) {
+                    current = lastMatching(parent.left, FREE);
+                    return true;
+                }
+            }
+            node = parent;
+        }
+        tree.updateNode(node);
+        current = null;
+        return false;
+    }
+
+
+    // Like next(), but skips every subtree whose aggregate shows no matching ParkingLot.
+    private boolean nextMatching(int kind) {
+        if (ParkingMetrics.ENABLED) {
+            steps = 0;
+        }
+        Node node = current;
+        if (subtreeMatches(node.right, kind)) {
+            current = firstMatching(node.right, kind);
+            return true;
+        }
+
+        while (node.parent != null) {
+            step();
+            Node parent = node.parent;
+            if (parent.left == node) {
+                if (lotMatches(parent.parkingLot, kind)) {
+                    current = parent;
+                    return true;
+                }
+                if (subtreeMatches(parent.right, kind)) {
+                    current = firstMatching(parent.right, kind);
+                    return true;
+                }
+            }
+            node = parent;
+        }
+        current = null;
+        return false;
+    }
+
+    // Like previous(), but skips every subtree whose aggregate shows no matching ParkingLot.
+    private boolean previousMatching(int kind) {
+        if (ParkingMetrics.ENABLED) {
+            steps = 0;
+        }
+        Node node = current;
+        if (subtreeMatches(node.left, kind)) {
+            current = lastMatching(node.left, kind);
+            return true;
+        }
+
+        while (node.parent != null) {
+            step();
+            Node parent = node.parent;
+            if (parent.right == node) {
+                if (lotMatches(parent.parkingLot, kind)) {
+                    current = parent;
+                    return true;
+                }
+                if (subtreeMatches(parent.left, kind)) {
+                    current = lastMatching(parent.left, kind);
+                    return true;
+                }
+            }
+            node = parent;
+        }
+        current = null;
+        return false;
+    }
+
+    // Finds the smallest matching ParkingLot of a subtree that is known to have one.
+    private Node firstMatching(Node node, int kind) {
+        while (true) {
+            step();
+            if (subtreeMatches(node.left, kind)) {
+                node = node.left;
+            } else if (lotMatches(node.parkingLot, kind)) {
+                return node;
+            } else {
+                node = node.right;
+            }
+        }
+    }
+
+    // Finds the biggest matching ParkingLot of a subtree that is known to have one.
+    private Node lastMatching(Node node, int kind) {
+        while (true) {
+            step();
+            if (subtreeMatches(node.right, kind)) {
+                node = node.right;
+            } else if (lotMatches(node.parkingLot, kind)) {
+                return node;
+            } else {
+                node = node.left;
+            }
+        }
+    }
+
+
+    private void step() {
+        if (ParkingMetrics.ENABLED) {
+            steps++;
+        }
+    }
+
+    private boolean subtreeMatches(Node node, int kind) {
+        if (node == null) {
+            return false;
+        }
+        if (kind == FREE) {
+            return node.subtreeHasFree;
+        } else if (kind == WAITING) {
+            return node.subtreeHasWaiting;
+        }
+        return node.subtreeHasReady;
+    }
+
+    private boolean lotMatches(ParkingLot parkingLot, int kind) {
+        if (kind == FREE) {
+            return parkingLot.getOccupiedCapacity() != parkingLot.getTruckLimit();
+        } else if (kind == WAITING) {
+            return parkingLot.getWaitingCount() != 0;
+        }
+        return parkingLot.getReadyCount() != 0;
+    }
+}
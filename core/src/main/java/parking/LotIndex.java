@@ -0,0 +1,73 @@
+package parking;
+
+/**
+ * The ordered index of ParkingLots by capacity that the commands route through.
+ * IndexedParkingNetwork runs every command on these operations only, so the index behind it can be
+ * swapped: AVLTree is an index over its own nodes, BPlusLotIndex a B+-tree with wide pages.
+ *
+ * The searches for a free slot, a waiting or a ready truck read the state of the lots as of their last
+ * update, so whoever changes a lot's trucks must call update(lot) before the next search.
+ */
+public interface LotIndex extends TruckCounts {
+
+    // Adds the lot. A lot with the same capacity as one already in the index is ignored.
+    void insert(ParkingLot parkingLot);
+
+    // Removes the lot with the given capacity and returns it, or returns null if there is none.
+    ParkingLot remove(int capacity);
+
+    // Returns the lot with exactly the given capacity, or null.
+    ParkingLot find(int capacity);
+
+    // Returns the lot with the biggest capacity at most the given one, or null.
+    ParkingLot floor(int capacity);
+
+    // Returns the lot with the smallest capacity at least the given one, or null.
+    ParkingLot ceiling(int capacity);
+
+    // Returns the biggest lot with a capacity at most the given one that is not full, or null.
+    ParkingLot floorNotFull(int capacity);
+
+    // Returns the smallest lot with a capacity at least the given one that has a waiting truck, or null.
+    ParkingLot ceilingWithWaiting(int capacity);
+
+    // Returns the smallest lot with a capacity at least the given one that has a ready truck, or null.
+    ParkingLot ceilingWithReady(int capacity);
+
+    // Takes in the new truck counts of a lot in the index.
+    void update(ParkingLot parkingLot);
+
+    // Moves the trucks of a removed lot into the lots with a capacity below the given one, each into the
+    // biggest lot that is not full, waiting ones first. The trucks that do not fit leave the system.
+    default void rehome(ParkingLot removed, int below) {
+        ParkingLot lotChosen = lotBelow(below);
+        while (lotChosen != null && removed.getWaitingCount() + removed.getReadyCount() != 0) {
+            Truck truck;
+            if (removed.waiting.size != 0) {
+                truck = removed.waiting.dequeue();
+                lotChosen.waiting.enqueue(truck);
+            } else {
+                truck = removed.ready.dequeue();
+                lotChosen.ready.enqueue(truck);
+            }
+            truck.setInLot(lotChosen);
+            lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+
+            if (lotChosen.getOccupiedCapacity() == lotChosen.getTruckLimit()) {
+                update(lotChosen);
+                lotChosen = lotBelow(lotChosen.getCapacity());
+            }
+        }
+        if (lotChosen != null) {
+            update(lotChosen);
+        }
+    }
+
+    // Returns the biggest lot below the capacity that is not full, or null.
+    private ParkingLot lotBelow(int capacity) {
+        return (capacity == Integer.MIN_VALUE) ? null : floorNotFull(capacity - 1);
+    }
+
+    // Returns the number of lots in the index.
+    int size();
+}
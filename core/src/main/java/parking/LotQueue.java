@@ -1,3 +1,5 @@
+package parking;
+
 
 public class LotQueue {
     private static class QueueNode{
@@ -38,5 +40,16 @@ public class LotQueue {
         return head.content;
     }
 
+    // Returns the trucks from the front to the back of the queue.
+    public Truck[] toArray(){
+        Truck[] trucks = new Truck[size];
+        QueueNode node = head;
+        for (int i = 0; i < size; i++) {
+            trucks[i] = node.content;
+            node = node.nextNode;
+        }
+        return trucks;
+    }
+
 
 }
@@ -0,0 +1,288 @@
+package parking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * An immutable view of the ParkingLots of an AVLTree between two commands, taken by AVLTree.snapshot().
+ * The view is a persistent AVL tree: a change to the live tree copies the path from the root to the
+ * changed lot and shares everything else with the older versions. The tree publishes a new version once
+ * a command is done, so a snapshot never shows a load or a delete_parking_lot halfway through. A snapshot
+ * can be taken in constant time and read from any number of threads without locks while the writer goes on.
+ * Versions no reader holds any more are left to the garbage collector.
+ */
+public final class LotSnapshot implements TruckCounts {
+    private final Lot root;
+
+
+    LotSnapshot(Lot root) {
+        this.root = root;
+    }
+
+
+    // Number of ParkingLots in the snapshot.
+    public int size() {
+        return (root == null) ? 0 : root.subtreeLots;
+    }
+
+    // Returns the lot with the given capacity, or null if there is none.
+    public Lot getLot(int capacity) {
+        Lot node = root;
+        while (node != null && node.capacity != capacity) {
+            node = (capacity < node.capacity) ? node.left : node.right;
+        }
+        return node;
+    }
+
+    // Returns all lots in increasing capacity order.
+    public List<Lot> lots() {
+        List<Lot> lots = new ArrayList<>(size());
+        collectInOrder(root, lots);
+        return lots;
+    }
+
+    private static void collectInOrder(Lot node, List<Lot> lots) {
+        if (node != null) {
+            collectInOrder(node.left, lots);
+            lots.add(node);
+            collectInOrder(node.right, lots);
+        }
+    }
+
+
+    // Count the trucks in the ParkingLots with a higher capacity.
+    public int count(int capacity) {
+        int totalCount = 0;
+        Lot node = root;
+        while (node != null) {
+            if (node.capacity > capacity) {
+                totalCount = totalCount + node.occupiedCapacity + subtreeTrucks(node.right);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return totalCount;
+    }
+
+    // Count the trucks in the ParkingLots with a capacity between low and high, both inclusive.
+    public int count_range(int low, int high) {
+        return countRange(low, high);
+    }
+
+    public int countAbove(int capacity) {
+        return count(capacity);
+    }
+
+    public int totalTrucks() {
+        return subtreeTrucks(root);
+    }
+
+    // Finds the biggest lot below the capacity that is not full, or null.
+    public Lot smallerBiggest(int capacity) {
+        return highestBelowNotFull(root, capacity);
+    }
+
+    // Finds the smallest lot above the capacity with a ready truck, or null.
+    public Lot smallestBiggerHasReady(int capacity) {
+        return lowestAbove(root, capacity, true);
+    }
+
+    // Finds the smallest lot above the capacity with a waiting truck, or null.
+    public Lot smallestBiggerHasWaiting(int capacity) {
+        return lowestAbove(root, capacity, false);
+    }
+
+    private static Lot highestBelowNotFull(Lot node, int capacity) {
+        if (node == null || !node.subtreeHasFree) {
+            return null;
+        }
+        if (node.capacity >= capacity) {
+            return highestBelowNotFull(node.left, capacity);
+        }
+        Lot found = highestBelowNotFull(node.right, capacity);
+        if (found != null) {
+            return found;
+        }
+        if (node.occupiedCapacity != node.truckLimit) {
+            return node;
+        }
+        return highestBelowNotFull(node.left, capacity);
+    }
+
+    private static Lot lowestAbove(Lot node, int capacity, boolean ready) {
+        if (node == null || !(ready ? node.subtreeHasReady : node.subtreeHasWaiting)) {
+            return null;
+        }
+        if (node.capacity <= capacity) {
+            return lowestAbove(node.right, capacity, ready);
+        }
+        Lot found = lowestAbove(node.left, capacity, ready);
+        if (found != null) {
+            return found;
+        }
+        if ((ready ? node.readyCount : node.waitingCount) != 0) {
+            return node;
+        }
+        return lowestAbove(node.right, capacity, ready);
+    }
+
+
+    // Returns a version with the state of the given lot added or replaced. Only the path to it is copied.
+    static Lot put(Lot node, ParkingLot parkingLot) {
+        if (node == null) {
+            return new Lot(parkingLot, null, null);
+        }
+        int capacity = parkingLot.getCapacity();
+        if (capacity < node.capacity) {
+            return balance(node.withChildren(put(node.left, parkingLot), node.right));
+        } else if (capacity > node.capacity) {
+            return balance(node.withChildren(node.left, put(node.right, parkingLot)));
+        }
+        return new Lot(parkingLot, node.left, node.right);
+    }
+
+    // Returns a version without the lot of the given capacity.
+    static Lot remove(Lot node, int capacity) {
+        if (node == null) {
+            return null;
+        }
+        if (capacity < node.capacity) {
+            return balance(node.withChildren(remove(node.left, capacity), node.right));
+        } else if (capacity > node.capacity) {
+            return balance(node.withChildren(node.left, remove(node.right, capacity)));
+        }
+
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Lot successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.withChildren(node.left, remove(node.right, successor.capacity)));
+    }
+
+    // Builds a balanced version from lots sorted by capacity in [from, to).
+    static Lot build(ParkingLot[] parkingLots, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Lot(parkingLots[middle], build(parkingLots, from, middle), build(parkingLots, middle + 1, to));
+    }
+
+
+    private static Lot balance(Lot node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            Lot left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.withChildren(left, node.right));
+        }
+        if (balance < -1) {
+            Lot right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.withChildren(node.left, right));
+        }
+        return node;
+    }
+
+    private static Lot rotateRight(Lot node) {
+        Lot left = node.left;
+        return left.withChildren(left.left, node.withChildren(left.right, node.right));
+    }
+
+    private static Lot rotateLeft(Lot node) {
+        Lot right = node.right;
+        return right.withChildren(node.withChildren(node.left, right.left), right.right);
+    }
+
+    private static int height(Lot node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int subtreeTrucks(Lot node) {
+        return (node == null) ? 0 : node.subtreeTrucks;
+    }
+
+
+    /**
+     * The state of one ParkingLot when its version was made, and a node of the persistent tree.
+     */
+    public static final class Lot {
+        private final int capacity;
+        private final int truckLimit;
+        private final int occupiedCapacity;
+        private final int waitingCount;
+        private final int readyCount;
+
+        private final Lot left;
+        private final Lot right;
+        private final int height;
+        private final int subtreeLots;
+        private final int subtreeTrucks;
+        private final boolean subtreeHasFree;
+        private final boolean subtreeHasWaiting;
+        private final boolean subtreeHasReady;
+
+        private Lot(ParkingLot parkingLot, Lot left, Lot right) {
+            this(parkingLot.getCapacity(), parkingLot.getTruckLimit(), parkingLot.getOccupiedCapacity(),
+                    parkingLot.getWaitingCount(), parkingLot.getReadyCount(), left, right);
+        }
+
+        private Lot(int capacity, int truckLimit, int occupiedCapacity, int waitingCount, int readyCount,
+                    Lot left, Lot right) {
+            this.capacity = capacity;
+            this.truckLimit = truckLimit;
+            this.occupiedCapacity = occupiedCapacity;
+            this.waitingCount = waitingCount;
+            this.readyCount = readyCount;
+            this.left = left;
+            this.right = right;
+
+            height = 1 + Math.max(LotSnapshot.height(left), LotSnapshot.height(right));
+            subtreeLots = 1 + ((left == null) ? 0 : left.subtreeLots) + ((right == null) ? 0 : right.subtreeLots);
+            subtreeTrucks = LotSnapshot.subtreeTrucks(left) + occupiedCapacity + LotSnapshot.subtreeTrucks(right);
+            subtreeHasFree = occupiedCapacity != truckLimit
+                    || (left != null && left.subtreeHasFree) || (right != null && right.subtreeHasFree);
+            subtreeHasWaiting = waitingCount != 0
+                    || (left != null && left.subtreeHasWaiting) || (right != null && right.subtreeHasWaiting);
+            subtreeHasReady = readyCount != 0
+                    || (left != null && left.subtreeHasReady) || (right != null && right.subtreeHasReady);
+        }
+
+        // The same lot state with other children.
+        private Lot withChildren(Lot left, Lot right) {
+            return new Lot(capacity, truckLimit, occupiedCapacity, waitingCount, readyCount, left, right);
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getTruckLimit() {
+            return truckLimit;
+        }
+
+        public int getOccupiedCapacity() {
+            return occupiedCapacity;
+        }
+
+        public int getWaitingCount() {
+            return waitingCount;
+        }
+
+        public int getReadyCount() {
+            return readyCount;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package parking;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Scanner;
+import javax.management.JMException;
+
+public class Main {
+    // The output is handed to the file in chunks of about this many bytes.
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
+    // Number of commands the mapped parser decodes before they are executed.
+    private static final int BATCH_SIZE = 1 << 14;
+
+    // Capacities above this go to the AVL fallback of the bitmap index, unless --max-capacity says otherwise.
+    private static final int DEFAULT_MAX_CAPACITY = (1 << 16) - 1;
+
+    public static void main(String[] args) {
+        double startingTime = System.currentTimeMillis();
+
+        // Check input file argument and flags.
+        // --scanner falls back to the line by line Scanner reader.
+        // --binary replays a binary command log written by BinaryLogConverter.
+        // --primitive keeps the trucks in primitive arrays instead of Truck objects.
+        // --array uses the array-backed engine, --offheap the same engine with its nodes off-heap.
+        // --persistent keeps the immutable copy of the lots that snapshots are taken from.
+        // --sharded splits the lots by capacity into one shard per processor, run in parallel.
+        // --index [avl|btree|bitmap] runs the commands through the LotIndex interface, on an AVL tree,
+        // a B+-tree or bitmaps over the capacities up to --max-capacity [capacity].
+        // --restore [file] starts from a checkpoint and skips the commands it already holds.
+        // --checkpoint [file] writes a checkpoint once the input is done.
+        // --journal [file] appends every command to a journal before it runs. Commands already in the
+        // journal are replayed from it and skipped in the input. --sync-every [commands] and
+        // --sync-millis [ms] set how often the journal is forced to disk.
+        // --pipelined parses, executes and writes on three threads connected by rings of batches.
+        // With -Dparking.metrics=true the metrics are registered with JMX and printed at the end.
+        String inputFileName = "inputs/type5.txt";
+        boolean useScanner = false;
+        boolean binary = false;
+        boolean primitive = false;
+        boolean array = false;
+        boolean offHeap = false;
+        boolean sharded = false;
+        boolean persistent = false;
+        boolean pipelined = false;
+        String indexName = null;
+        int maxCapacity = DEFAULT_MAX_CAPACITY;
+        String restoreFileName = null;
+        String checkpointFileName = null;
+        String journalFileName = null;
+        int syncEvery = 1 << 16;
+        long syncMillis = 50;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--scanner")) {
+                useScanner = true;
+            } else if (arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.equals("--primitive")) {
+                primitive = true;
+            } else if (arg.equals("--array")) {
+                array = true;
+            } else if (arg.equals("--offheap")) {
+                offHeap = true;
+            } else if (arg.equals("--sharded")) {
+                sharded = true;
+            } else if (arg.equals("--persistent")) {
+                persistent = true;
+            } else if (arg.equals("--pipelined")) {
+                pipelined = true;
+            } else if (arg.equals("--index") && i + 1 < args.length) {
+                indexName = args[++i];
+            } else if (arg.equals("--max-capacity") && i + 1 < args.length) {
+                maxCapacity = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--restore") && i + 1 < args.length) {
+                restoreFileName = args[++i];
+            } else if (arg.equals("--checkpoint") && i + 1 < args.length) {
+                checkpointFileName = args[++i];
+            } else if (arg.equals("--journal") && i + 1 < args.length) {
+                journalFileName = args[++i];
+            } else if (arg.equals("--sync-every") && i + 1 < args.length) {
+                syncEvery = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--sync-millis") && i + 1 < args.length) {
+                syncMillis = Long.parseLong(args[++i]);
+            } else {
+                inputFileName = arg;
+            }
+        }
+
+        ParkingEngine engine;
+        if (sharded) {
+            // The shard bounds are taken from the lots the input creates.
+            try {
+                CommandSource lots = binary ? new BinaryCommandReader(Paths.get(inputFileName))
+                        : new MappedCommandParser(Paths.get(inputFileName));
+                engine = ShardedParkingNetwork.forInput(lots, Runtime.getRuntime().availableProcessors());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        } else if (indexName != null) {
+            LotIndex index = newLotIndex(indexName, maxCapacity);
+            if (index == null) {
+                System.out.println("Unknown index: " + indexName);
+                return;
+            }
+            engine = new IndexedParkingNetwork(index);
+        } else if (array || offHeap) {
+            engine = new ArrayAVLTree(offHeap);
+        } else if (primitive) {
+            engine = new PrimitiveTruckTree();
+        } else {
+            engine = new AVLTree(persistent);
+        }
+        ByteResultSink sink = new ByteResultSink();
+
+        // Checkpoints hold AVLTree lots and count the commands of the batched readers.
+        boolean checkpoints = restoreFileName != null || checkpointFileName != null;
+        if (checkpoints && (!(engine instanceof AVLTree) || useScanner)) {
+            System.out.println("Checkpoints need the default or the --primitive engine and a batched reader");
+            return;
+        }
+        if (journalFileName != null && useScanner) {
+            System.out.println("The journal needs a batched reader");
+            return;
+        }
+        if (pipelined && (useScanner || journalFileName != null || restoreFileName != null)) {
+            System.out.println("--pipelined cannot be combined with --scanner, --journal or --restore");
+            return;
+        }
+        long skip = 0;
+        if (restoreFileName != null) {
+            long restoreStart = System.nanoTime();
+            try {
+                skip = ((AVLTree) engine).restore(Paths.get(restoreFileName));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            System.out.println("Restore time: " + (System.nanoTime() - restoreStart) / 1e9 + " seconds, skipping "
+                    + skip + " commands");
+        }
+
+        if (ParkingMetrics.ENABLED) {
+            try {
+                ParkingMetrics.register();
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // "Try-with-resources" - Java automatically closes these when done!
+        try (OutputStream out = new FileOutputStream("output.txt")) {
+            if (useScanner) {
+                runScanner(engine, inputFileName, sink, out);
+            } else {
+                // A new journal starts after the commands the checkpoint holds.
+                CommandJournal journal = (journalFileName == null) ? null
+                        : new CommandJournal(Paths.get(journalFileName), skip, syncEvery, syncMillis);
+                try {
+                    CommandSource source = binary ? new BinaryCommandReader(Paths.get(inputFileName))
+                            : new MappedCommandParser(Paths.get(inputFileName));
+                    long commandCount;
+                    if (pipelined) {
+                        commandCount = new PipelinedReplay(engine, source, out).run();
+                    } else if (journal != null) {
+                        commandCount = runJournaled(engine, source, Paths.get(journalFileName), journal, skip, sink, out);
+                    } else {
+                        commandCount = runBatched(engine, source, sink, out, skip, null);
+                    }
+                    if (checkpointFileName != null) {
+                        ((AVLTree) engine).checkpoint(Paths.get(checkpointFileName), commandCount);
+                        System.out.println("Checkpoint of " + commandCount + " commands written to " + checkpointFileName);
+                    }
+                } finally {
+                    if (journal != null) {
+                        journal.close();
+                    }
+                }
+            }
+            sink.writeTo(out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        double endingTime = System.currentTimeMillis();
+        System.out.println("Total execution time: " + (endingTime - startingTime) / 1000 + " seconds");
+        if (ParkingMetrics.ENABLED) {
+            System.out.println(ParkingMetrics.getInstance().report());
+        }
+    }
+
+
+    // Returns the LotIndex with the given name, or null if there is none.
+    // maxCapacity is the biggest capacity the bitmap index keeps in its bitmaps.
+    static LotIndex newLotIndex(String name, int maxCapacity) {
+        switch (name) {
+            case "avl":
+                return new AVLTree();
+            case "btree":
+                return new BPlusLotIndex();
+            case "bitmap":
+                return new BitmapLotIndex(maxCapacity);
+            default:
+                return null;
+        }
+    }
+
+    // Reads the input line by line with a Scanner.
+    static void runScanner(ParkingEngine engine, String inputFileName, ByteResultSink sink, OutputStream out)
+            throws IOException {
+        try (Scanner sc = new Scanner(new FileInputStream(inputFileName))) {
+            while (sc.hasNextLine()) {
+                String line = sc.nextLine();
+                // Skip empty lines to prevent crashes
+                if (line.trim().isEmpty()) continue;
+
+                String[] parts = line.split(" ");
+                int opcode = Commands.opcodeOf(parts[0]);
+                int first = (parts.length > 1) ? Integer.parseInt(parts[1]) : 0;
+                int second = (parts.length > 2) ? Integer.parseInt(parts[2]) : 0;
+
+                Commands.execute(engine, opcode, first, second, sink);
+
+                if (sink.size() >= FLUSH_THRESHOLD) {
+                    sink.writeTo(out);
+                }
+            }
+        }
+    }
+
+
+    // Reads the input from a command source in batches, so parsing and execution can be timed apart.
+    static long runBatched(ParkingEngine engine, CommandSource source, ByteResultSink sink, OutputStream out)
+            throws IOException {
+        return runBatched(engine, source, sink, out, 0, null);
+    }
+
+    // Same, but the first skip commands are only parsed, they are already in a restored checkpoint.
+    // The other commands are appended to the journal, if there is one, before they run.
+    // Returns the number of commands read, the skipped ones included.
+    static long runBatched(ParkingEngine engine, CommandSource source, ByteResultSink sink, OutputStream out,
+                           long skip, CommandJournal journal) throws IOException {
+        int[] opcodes = new int[BATCH_SIZE];
+        int[] firsts = new int[BATCH_SIZE];
+        int[] seconds = new int[BATCH_SIZE];
+        long parseTime = 0;
+        long executeTime = 0;
+        CommandRun pendingRun = new CommandRun();
+        long commandCount = 0;
+
+        try (CommandSource parser = source) {
+            while (true) {
+                long parseStart = System.nanoTime();
+                int count = parser.parse(opcodes, firsts, seconds);
+                long executeStart = System.nanoTime();
+                parseTime += executeStart - parseStart;
+                commandCount += count;
+
+                // Skipped commands are dropped from the front of the batch.
+                int start = (int) Math.min(skip, count);
+                if (start > 0) {
+                    skip -= start;
+                    count -= start;
+                    System.arraycopy(opcodes, start, opcodes, 0, count);
+                    System.arraycopy(firsts, start, firsts, 0, count);
+                    System.arraycopy(seconds, start, seconds, 0, count);
+                    if (count == 0) {
+                        continue;
+                    }
+                }
+
+                if (journal != null) {
+                    journal.append(opcodes, firsts, seconds, 0, count);
+                }
+
+                if (count == 0) {
+                    pendingRun.flushTo(engine, sink);
+                    executeTime += System.nanoTime() - executeStart;
+                    break;
+                }
+
+                executeBatch(engine, opcodes, firsts, seconds, count, pendingRun, sink);
+                if (sink.size() >= FLUSH_THRESHOLD) {
+                    sink.writeTo(out);
+                }
+                executeTime += System.nanoTime() - executeStart;
+            }
+        }
+
+        System.out.println("Parse time: " + parseTime / 1e9 + " seconds");
+        System.out.println("Execution time: " + executeTime / 1e9 + " seconds");
+        return commandCount;
+    }
+
+
+    // Runs the input with a journal. The skip commands are already in a restored checkpoint. The journaled
+    // commands after them are replayed first, then the input goes on after the last journaled command.
+    // A journal that starts after the checkpoint or ends before it does not continue it and is refused.
+    // Returns the number of commands read from the input, the skipped ones included.
+    static long runJournaled(ParkingEngine engine, CommandSource source, Path journalPath, CommandJournal journal,
+                             long skip, ByteResultSink sink, OutputStream out) throws IOException {
+        long base = journal.getBaseCount();
+        long end = journal.getCommandCount();
+        if (skip < base || skip > end) {
+            source.close();
+            throw new IOException("The journal " + journalPath + " holds the commands from " + base + " to " + end
+                    + ", it does not continue from the " + skip + " commands of the checkpoint");
+        }
+        if (end > skip) {
+            System.out.println("Replaying " + (end - skip) + " commands from the journal");
+            runBatched(engine, CommandJournal.reader(journalPath), sink, out, skip - base, null);
+        }
+        return runBatched(engine, source, sink, out, end, journal);
+    }
+
+
+    // Runs a batch of parsed commands. Runs of create_parking_lot and add_truck are collected in
+    // pendingRun, also across batches, and handed to the engine in bulk. The caller flushes the last run.
+    static void executeBatch(ParkingEngine engine, int[] opcodes, int[] firsts, int[] seconds, int count,
+                             CommandRun pendingRun, ResultSink sink) {
+        if (engine instanceof ShardedParkingNetwork) {
+            // The sharded network splits the batch among its shards itself.
+            ((ShardedParkingNetwork) engine).execute(opcodes, firsts, seconds, count, sink);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (opcodes[i] == Commands.CREATE_PARKING_LOT || opcodes[i] == Commands.ADD_TRUCK) {
+                if (opcodes[i] != pendingRun.opcode) {
+                    pendingRun.flushTo(engine, sink);
+                    pendingRun.opcode = opcodes[i];
+                }
+                pendingRun.add(firsts[i], seconds[i]);
+                continue;
+            }
+            pendingRun.flushTo(engine, sink);
+            Commands.execute(engine, opcodes[i], firsts[i], seconds[i], sink);
+        }
+    }
+
+
+    // A run of consecutive commands of one kind waiting to be handed to the engine in bulk.
+    static class CommandRun {
+        int opcode = Commands.UNKNOWN;
+        int[] firsts = new int[BATCH_SIZE];
+        int[] seconds = new int[BATCH_SIZE];
+        int size = 0;
+
+        void add(int first, int second) {
+            if (size == firsts.length) {
+                firsts = Arrays.copyOf(firsts, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            firsts[size] = first;
+            seconds[size] = second;
+            size++;
+        }
+
+        void flushTo(ParkingEngine engine, ResultSink sink) {
+            if (size == 0) {
+                return;
+            }
+            long start = ParkingMetrics.ENABLED ? System.nanoTime() : 0;
+            if (opcode == Commands.CREATE_PARKING_LOT) {
+                engine.create_parking_lots(firsts, seconds, 0, size);
+            } else {
+                engine.add_trucks(firsts, seconds, 0, size, sink);
+            }
+            if (ParkingMetrics.ENABLED) {
+                ParkingMetrics.recordBatch(opcode, System.nanoTime() - start, size);
+            }
+            size = 0;
+        }
+    }
+}
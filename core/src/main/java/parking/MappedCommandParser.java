@@ -0,0 +1,161 @@
+package parking;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads the text command format straight from a memory-mapped file.
+ * Opcodes and ints are decoded from the bytes, so no String is created per line.
+ * Files larger than one mapping are read through a window that moves forward line by line.
+ */
+public class MappedCommandParser implements CommandSource {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    // The window is moved once fewer bytes than this are left, so a line never crosses its end.
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private static final byte[][] NAMES = new byte[Commands.OPCODE_COUNT][];
+    static {
+        NAMES[Commands.CREATE_PARKING_LOT] = "create_parking_lot".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.ADD_TRUCK] = "add_truck".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.READY] = "ready".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.LOAD] = "load".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.COUNT] = "count".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.COUNT_RANGE] = "count_range".getBytes(StandardCharsets.US_ASCII);
+        NAMES[Commands.DELETE_PARKING_LOT] = "delete_parking_lot".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private MappedByteBuffer buffer;
+    private long windowStart = 0;
+    private int position = 0;
+
+
+    public MappedCommandParser(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        mapWindow(0);
+    }
+
+
+    @Override
+    public int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException {
+        int count = 0;
+        while (count < opcodes.length) {
+            if (buffer.limit() - position < MAX_LINE_LENGTH && windowStart + buffer.limit() < fileSize) {
+                mapWindow(windowStart + position);
+            }
+            if (position >= buffer.limit()) {
+                break;
+            }
+
+            int opcode = parseLine(firsts, seconds, count);
+            if (opcode != Commands.UNKNOWN) {
+                opcodes[count] = opcode;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    // Parses the line at the current position and moves past it. Returns the opcode or UNKNOWN.
+    private int parseLine(int[] firsts, int[] seconds, int index) {
+        skipBlanks();
+
+        int wordStart = position;
+        while (position < buffer.limit() && !isSeparator(buffer.get(position))) {
+            position++;
+        }
+        int opcode = matchOpcode(wordStart, position);
+
+        firsts[index] = parseInt();
+        seconds[index] = parseInt();
+
+        // Skip the rest of the line.
+        while (position < buffer.limit() && buffer.get(position) != '\n') {
+            position++;
+        }
+        position++;
+        return opcode;
+    }
+
+    private int matchOpcode(int start, int end) {
+        for (int opcode = 0; opcode < NAMES.length; opcode++) {
+            byte[] name = NAMES[opcode];
+            if (name.length != end - start) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length && buffer.get(start + i) == name[i]) {
+                i++;
+            }
+            if (i == name.length) {
+                return opcode;
+            }
+        }
+        return Commands.UNKNOWN;
+    }
+
+    // Parses the next int on the line, or returns 0 if there is none.
+    private int parseInt() {
+        skipBlanks();
+        if (position >= buffer.limit()) {
+            return 0;
+        }
+
+        boolean negative = false;
+        if (buffer.get(position) == '-') {
+            negative = true;
+            position++;
+        }
+
+        int value = 0;
+        while (position < buffer.limit()) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (negative) {
+            return -value;
+        }
+        return value;
+    }
+
+    // Skips spaces, tabs and carriage returns, but stops at the end of the line.
+    private void skipBlanks() {
+        while (position < buffer.limit()) {
+            byte b = buffer.get(position);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private void mapWindow(long start) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        position = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package parking;
+
+public class Node {
+    ParkingLot parkingLot;
+    Node parent;
+    public int height;
+    // Total number of trucks in the ParkingLots of this subtree.
+    int subtreeTrucks;
+    // True if at least one ParkingLot in this subtree is not full.
+    boolean subtreeHasFree;
+    // True if at least one ParkingLot in this subtree has a waiting / ready truck.
+    boolean subtreeHasWaiting;
+    boolean subtreeHasReady;
+    Node left;
+    Node right;
+
+    Node(ParkingLot parkingLot) {
+        this.parkingLot = parkingLot;
+        height = 1;
+        subtreeTrucks = parkingLot.getOccupiedCapacity();
+        subtreeHasFree = parkingLot.getOccupiedCapacity() != parkingLot.getTruckLimit();
+        subtreeHasWaiting = parkingLot.getWaitingCount() != 0;
+        subtreeHasReady = parkingLot.getReadyCount() != 0;
+    }
+}
@@ -0,0 +1,74 @@
+package parking;
+
+/**
+ * Index-addressed storage of the AVL nodes of an ArrayAVLTree.
+ * A node is an int index. Freed indices are kept on a free list and handed out again first.
+ */
+public abstract class NodeStore {
+    public static final int NIL = -1;
+
+    private int used = 0;
+    private int[] freeNodes = new int[16];
+    private int freeCount = 0;
+
+
+    // Returns the index of an unused node. Its fields have to be set by the caller.
+    public int allocate() {
+        if (freeCount > 0) {
+            return freeNodes[--freeCount];
+        }
+        if (used == capacity()) {
+            grow(capacity() * 2);
+        }
+        return used++;
+    }
+
+    public void free(int node) {
+        if (freeCount == freeNodes.length) {
+            int[] bigger = new int[freeNodes.length * 2];
+            System.arraycopy(freeNodes, 0, bigger, 0, freeCount);
+            freeNodes = bigger;
+        }
+        freeNodes[freeCount++] = node;
+    }
+
+    // Returns one more than the biggest index handed out so far.
+    public int highWaterMark() {
+        return used;
+    }
+
+
+    // Number of nodes that fit without growing.
+    protected abstract int capacity();
+
+    protected abstract void grow(int newCapacity);
+
+
+    public abstract int getCapacity(int node);
+    public abstract void setCapacity(int node, int value);
+
+    public abstract int getTruckLimit(int node);
+    public abstract void setTruckLimit(int node, int value);
+
+    public abstract int getOccupied(int node);
+    public abstract void setOccupied(int node, int value);
+
+    public abstract int getLeft(int node);
+    public abstract void setLeft(int node, int value);
+
+    public abstract int getRight(int node);
+    public abstract void setRight(int node, int value);
+
+    public abstract int getParent(int node);
+    public abstract void setParent(int node, int value);
+
+    public abstract int getSubtreeTrucks(int node);
+    public abstract void setSubtreeTrucks(int node, int value);
+
+    public abstract int getHeight(int node);
+    public abstract void setHeight(int node, int value);
+
+    // Bit set of the subtree aggregates, see ArrayAVLTree.
+    public abstract int getFlags(int node);
+    public abstract void setFlags(int node, int value);
+}
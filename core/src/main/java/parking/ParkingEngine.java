@@ -0,0 +1,45 @@
+package parking;
+
+/**
+ * The command API of a parking network. AVLTree and ArrayAVLTree both implement it,
+ * so the engines can be swapped and replayed on the same input.
+ */
+public interface ParkingEngine {
+
+    void create_parking_lot(int capacity, int truckLimit);
+
+    // Creates count parking lots from the arrays, starting at index from. Same result as
+    // calling create_parking_lot for each of them in order.
+    default void create_parking_lots(int[] capacities, int[] truckLimits, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            create_parking_lot(capacities[i], truckLimits[i]);
+        }
+    }
+
+    // Removes the lot with the given capacity, if there is one.
+    void delete(int capacity);
+
+    // Removes the lot with the given capacity and moves its trucks into the smaller lots.
+    // The waiting and then the ready trucks go in FIFO order, into the same section of the biggest
+    // smaller lot that is not full. Trucks that find no lot leave. Writes no output.
+    void delete_parking_lot(int capacity);
+
+    void add_truck(int truck_id, int capacity, ResultSink sink);
+
+    // Adds count trucks from the arrays, starting at index from. Same result as calling
+    // add_truck for each of them in order, with one line per truck.
+    default void add_trucks(int[] truck_ids, int[] capacities, int from, int count, ResultSink sink) {
+        for (int i = from; i < from + count; i++) {
+            add_truck(truck_ids[i], capacities[i], sink);
+            sink.endLine();
+        }
+    }
+
+    void ready(int capacity, ResultSink sink);
+
+    void load(int capacity, int loadAmount, ResultSink sink);
+
+    void count(int capacity, ResultSink sink);
+
+    void count_range(int low, int high, ResultSink sink);
+}
@@ -0,0 +1,226 @@
+package parking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Sends an input file to a ParkingServer over one or more connections and measures the throughput
+ * and the latency of every command with a reply. Commands are pipelined: up to --window commands
+ * per connection may wait for their replies. A command's latency runs from when it is queued for
+ * sending until its reply line arrives.
+ *
+ * Usage: ParkingLoadClient [input file] [--port port | --unix path] [--connections n] [--window n]
+ *        [--output file]
+ * With one connection --output writes the replies to a file, to compare with the output of Main.
+ */
+public class ParkingLoadClient {
+    // Commands are sent in chunks of about this many bytes.
+    private static final int SEND_CHUNK = 1 << 14;
+
+
+    public static void main(String[] args) throws Exception {
+        String inputFileName = "inputs/type5.txt";
+        int port = 7070;
+        String unixPath = null;
+        int connections = 1;
+        int window = 1 << 12;
+        String outputFileName = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--unix") && i + 1 < args.length) {
+                unixPath = args[++i];
+            } else if (arg.equals("--connections") && i + 1 < args.length) {
+                connections = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--window") && i + 1 < args.length) {
+                window = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--output") && i + 1 < args.length) {
+                outputFileName = args[++i];
+            } else {
+                inputFileName = arg;
+            }
+        }
+        if (outputFileName != null && connections != 1) {
+            System.out.println("--output needs a single connection");
+            return;
+        }
+
+        byte[] input = Files.readAllBytes(Paths.get(inputFileName));
+        int[] lineEnds = lineEnds(input);
+        boolean[] replies = new boolean[lineEnds.length];
+        int replyCount = 0;
+        int lineStart = 0;
+        for (int line = 0; line < lineEnds.length; line++) {
+            String[] parts = new String(input, lineStart, lineEnds[line] - lineStart).trim().split(" ");
+            replies[line] = Commands.hasOutput(Commands.opcodeOf(parts[0]));
+            if (replies[line]) {
+                replyCount++;
+            }
+            lineStart = lineEnds[line] + 1;
+        }
+        SocketAddress address = (unixPath != null) ? UnixDomainSocketAddress.of(unixPath)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        Session[] sessions = new Session[connections];
+        for (int i = 0; i < connections; i++) {
+            sessions[i] = new Session(SocketChannel.open(address), input, lineEnds, replies, replyCount, window);
+        }
+        OutputStream out = (outputFileName != null) ? Files.newOutputStream(Paths.get(outputFileName)) : null;
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[connections * 2];
+        for (int i = 0; i < connections; i++) {
+            Session session = sessions[i];
+            threads[2 * i] = new Thread(session::sendAll, "client-sender");
+            threads[2 * i + 1] = new Thread(() -> session.receiveAll(out), "client-receiver");
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (out != null) {
+            out.close();
+        }
+
+        Histogram latencies = new Histogram();
+        for (Session session : sessions) {
+            session.channel.close();
+            if (session.failure != null) {
+                throw session.failure;
+            }
+            latencies.add(session.latencies);
+        }
+        long commands = (long) connections * lineEnds.length;
+        System.out.printf("%d connections, %d commands, %d replies in %.3f seconds%n",
+                connections, commands, latencies.getCount(), elapsed / 1e9);
+        System.out.printf("Throughput: %.0f commands/s%n", commands / (elapsed / 1e9));
+        System.out.println("Latency (ns): " + new HistogramSummary(latencies));
+    }
+
+    // Returns the index of the line break after every line, or the file length after an unterminated last line.
+    private static int[] lineEnds(byte[] input) {
+        int count = 0;
+        for (int i = 0; i < input.length; i++) {
+            if (input[i] == '\n' || (i == input.length - 1)) {
+                count++;
+            }
+        }
+        int[] ends = new int[count];
+        int line = 0;
+        for (int i = 0; i < input.length; i++) {
+            if (input[i] == '\n') {
+                ends[line++] = i;
+            } else if (i == input.length - 1) {
+                ends[line++] = input.length;
+            }
+        }
+        return ends;
+    }
+
+
+    /**
+     * One connection. The sender writes the input and the receiver counts the reply lines.
+     * The window is a semaphore: a permit per command whose reply has not arrived yet.
+     */
+    private static final class Session {
+        private final SocketChannel channel;
+        private final byte[] input;
+        private final int[] lineEnds;
+        private final boolean[] replies;
+        private final int replyCount;
+        private final Semaphore window;
+
+        // When the command of every reply was queued, by reply number.
+        private final AtomicLongArray sentAt;
+        private final Histogram latencies = new Histogram();
+        private volatile Exception failure;
+
+        Session(SocketChannel channel, byte[] input, int[] lineEnds, boolean[] replies, int replyCount, int window) {
+            this.channel = channel;
+            this.input = input;
+            this.lineEnds = lineEnds;
+            this.replies = replies;
+            this.replyCount = replyCount;
+            this.window = new Semaphore(window);
+            this.sentAt = new AtomicLongArray(replyCount);
+        }
+
+        void sendAll() {
+            try {
+                int chunkStart = 0;
+                int reply = 0;
+                for (int line = 0; line < lineEnds.length; line++) {
+                    if (replies[line]) {
+                        // Send what is queued before waiting for room in the window.
+                        if (!window.tryAcquire()) {
+                            chunkStart = write(chunkStart, lineStart(line));
+                            window.acquire();
+                        }
+                        sentAt.set(reply++, System.nanoTime());
+                    }
+                    if (lineEnds[line] + 1 - chunkStart >= SEND_CHUNK) {
+                        chunkStart = write(chunkStart, Math.min(lineEnds[line] + 1, input.length));
+                    }
+                }
+                write(chunkStart, input.length);
+                channel.shutdownOutput();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        private int lineStart(int line) {
+            return (line == 0) ? 0 : lineEnds[line - 1] + 1;
+        }
+
+        // Writes input[from, to) and returns to.
+        private int write(int from, int to) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(input, from, to - from);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return to;
+        }
+
+        void receiveAll(OutputStream out) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            int received = 0;
+            try {
+                while (received < replyCount) {
+                    buffer.clear();
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("The server closed the connection after " + received + " replies");
+                    }
+                    long now = System.nanoTime();
+                    byte[] bytes = buffer.array();
+                    for (int i = 0; i < buffer.position(); i++) {
+                        if (bytes[i] == '\n') {
+                            latencies.record(now - sentAt.get(received++));
+                            window.release();
+                        }
+                    }
+                    if (out != null) {
+                        out.write(bytes, 0, buffer.position());
+                    }
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+}
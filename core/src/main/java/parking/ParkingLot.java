@@ -0,0 +1,62 @@
+package parking;
+
+public class ParkingLot {
+    private int occupiedCapacity = 0;
+    private int capacity;
+    private int truckLimit;
+    public LotQueue waiting;
+    public LotQueue ready;
+
+    // Queues of TruckStore slots, only used by a PrimitiveTruckTree instead of the LotQueues.
+    public IntRingQueue waitingSlots;
+    public IntRingQueue readySlots;
+
+
+    public ParkingLot(int capacity, int truckLimit){
+        this(capacity, truckLimit, false);
+    }
+
+    public ParkingLot(int capacity, int truckLimit, boolean slotQueues){
+        this.capacity = capacity;
+        this.truckLimit = truckLimit;
+        if (slotQueues) {
+            waitingSlots = new IntRingQueue();
+            readySlots = new IntRingQueue();
+        } else {
+            waiting = new LotQueue();
+            ready = new LotQueue();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getOccupiedCapacity() {
+        return occupiedCapacity;
+    }
+
+    public int getTruckLimit() {
+        return truckLimit;
+    }
+
+    public int getWaitingCount() {
+        if (waitingSlots != null) {
+            return waitingSlots.size();
+        }
+        return waiting.size;
+    }
+
+    public int getReadyCount() {
+        if (readySlots != null) {
+            return readySlots.size();
+        }
+        return ready.size;
+    }
+
+
+    public void setOccupiedCapacity(int occupiedCapacity) {
+        this.occupiedCapacity = occupiedCapacity;
+    }
+
+}
@@ -0,0 +1,239 @@
+package parking;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Latency histograms per command, per batched run, and health figures of the AVLTree: how far the searches fall back
+ * from their first candidate, rotations, the tree height, trucks moved per load and -1 results.
+ * Runs of create_parking_lot and add_truck that the batched reader hands to the engine in bulk are timed
+ * as a whole and kept apart, in the batch histograms, so the per-command percentiles only hold commands
+ * that were timed on their own.
+ *
+ * Recording is switched on with -Dparking.metrics=true. ENABLED is a constant, so when it is off
+ * every record call is an empty method the JIT drops. Recording allocates nothing and is meant for the
+ * one thread running the commands. The shard workers of a ShardedParkingNetwork share these counters,
+ * so with --sharded the figures are approximate.
+ */
+public final class ParkingMetrics implements ParkingMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("parking.metrics");
+    public static final String OBJECT_NAME = "parking:type=ParkingMetrics";
+
+    // What a fallback walk looks for.
+    public static final int NOT_FULL = 0;
+    public static final int WAITING = 1;
+    public static final int READY = 2;
+    private static final String[] FALLBACK_NAMES = {"not_full", "waiting", "ready"};
+
+    private static final int OPCODES = Commands.OPCODE_COUNT;
+
+    private static final Histogram[] latencies = newHistograms(OPCODES);
+    private static final Histogram[] batchLatencies = newHistograms(OPCODES);
+    private static final Histogram[] batchSizes = newHistograms(OPCODES);
+    private static final Histogram[] fallbacks = newHistograms(FALLBACK_NAMES.length);
+    private static final Histogram trucksPerLoad = new Histogram();
+    private static final long[] misses = new long[OPCODES];
+    private static long insertRotations = 0;
+    private static long deleteRotations = 0;
+    private static int treeHeight = 0;
+
+    private static final ParkingMetrics INSTANCE = new ParkingMetrics();
+
+
+    private ParkingMetrics() {
+    }
+
+    private static Histogram[] newHistograms(int count) {
+        Histogram[] histograms = new Histogram[count];
+        for (int i = 0; i < count; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+
+    // Registers the metrics with the platform MBean server, so JConsole and other JMX clients see them.
+    public static void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+    }
+
+    public static ParkingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+
+    public static void recordLatency(int opcode, long nanos) {
+        if (ENABLED && opcode >= 0 && opcode < OPCODES) {
+            latencies[opcode].record(nanos);
+        }
+    }
+
+    // Records a run of count commands that ran in bulk and took nanos together.
+    public static void recordBatch(int opcode, long nanos, int count) {
+        if (ENABLED && opcode >= 0 && opcode < OPCODES) {
+            batchLatencies[opcode].record(nanos);
+            batchSizes[opcode].record(count);
+        }
+    }
+
+    public static void recordFallback(int kind, int steps) {
+        if (ENABLED) {
+            fallbacks[kind].record(steps);
+        }
+    }
+
+    public static void recordMiss(int opcode) {
+        if (ENABLED) {
+            misses[opcode]++;
+        }
+    }
+
+    public static void recordLoad(int trucksMoved) {
+        if (ENABLED) {
+            trucksPerLoad.record(trucksMoved);
+        }
+    }
+
+    public static void recordInsertRotations(int rotations) {
+        if (ENABLED) {
+            insertRotations += rotations;
+        }
+    }
+
+    public static void recordDeleteRotations(int rotations) {
+        if (ENABLED) {
+            deleteRotations += rotations;
+        }
+    }
+
+    public static void recordTreeHeight(int height) {
+        if (ENABLED) {
+            treeHeight = height;
+        }
+    }
+
+
+    @Override
+    public Map<String, HistogramSummary> getCommandLatencies() {
+        Map<String, HistogramSummary> summaries = new LinkedHashMap<>();
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            summaries.put(Commands.nameOf(opcode), new HistogramSummary(latencies[opcode]));
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, HistogramSummary> getBatchLatencies() {
+        return summariesByCommand(batchLatencies);
+    }
+
+    @Override
+    public Map<String, HistogramSummary> getBatchSizes() {
+        return summariesByCommand(batchSizes);
+    }
+
+    // The summaries of the commands that have a value recorded.
+    private static Map<String, HistogramSummary> summariesByCommand(Histogram[] histograms) {
+        Map<String, HistogramSummary> summaries = new LinkedHashMap<>();
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            if (histograms[opcode].getCount() != 0) {
+                summaries.put(Commands.nameOf(opcode), new HistogramSummary(histograms[opcode]));
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, HistogramSummary> getFallbackChainLengths() {
+        Map<String, HistogramSummary> summaries = new LinkedHashMap<>();
+        for (int kind = 0; kind < FALLBACK_NAMES.length; kind++) {
+            summaries.put(FALLBACK_NAMES[kind], new HistogramSummary(fallbacks[kind]));
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, Long> getMissCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            if (misses[opcode] != 0) {
+                counts.put(Commands.nameOf(opcode), misses[opcode]);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public HistogramSummary getTrucksMovedPerLoad() {
+        return new HistogramSummary(trucksPerLoad);
+    }
+
+    @Override
+    public long getInsertRotations() {
+        return insertRotations;
+    }
+
+    @Override
+    public long getDeleteRotations() {
+        return deleteRotations;
+    }
+
+    @Override
+    public int getTreeHeight() {
+        return treeHeight;
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : latencies) {
+            histogram.reset();
+        }
+        for (Histogram histogram : batchLatencies) {
+            histogram.reset();
+        }
+        for (Histogram histogram : batchSizes) {
+            histogram.reset();
+        }
+        for (Histogram histogram : fallbacks) {
+            histogram.reset();
+        }
+        trucksPerLoad.reset();
+        Arrays.fill(misses, 0);
+        insertRotations = 0;
+        deleteRotations = 0;
+    }
+
+
+    // The metrics as lines of text, for printing at the end of a run.
+    public String report() {
+        StringBuilder report = new StringBuilder("Command latencies (ns):\n");
+        for (Map.Entry<String, HistogramSummary> entry : getCommandLatencies().entrySet()) {
+            if (entry.getValue().getCount() != 0) {
+                report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+        }
+        report.append("Batched runs (ns per run):\n");
+        for (Map.Entry<String, HistogramSummary> entry : getBatchLatencies().entrySet()) {
+            report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        report.append("Batched runs (commands per run):\n");
+        for (Map.Entry<String, HistogramSummary> entry : getBatchSizes().entrySet()) {
+            report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        report.append("Fallback chain lengths (nodes):\n");
+        for (Map.Entry<String, HistogramSummary> entry : getFallbackChainLengths().entrySet()) {
+            report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        report.append("Trucks moved per load: ").append(getTrucksMovedPerLoad()).append('\n');
+        report.append("-1 results: ").append(getMissCounts()).append('\n');
+        report.append("Rotations: ").append(insertRotations).append(" on insert, ")
+                .append(deleteRotations).append(" on delete\n");
+        report.append("Tree height: ").append(treeHeight);
+        return report.toString();
+    }
+}
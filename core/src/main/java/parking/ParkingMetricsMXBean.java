@@ -0,0 +1,34 @@
+package parking;
+
+import java.util.Map;
+
+
+/**
+ * The metrics of ParkingMetrics as seen through JMX, under the name parking:type=ParkingMetrics.
+ */
+public interface ParkingMetricsMXBean {
+    // Nanoseconds per command, by command name. Commands that ran in a batched run are not included.
+    Map<String, HistogramSummary> getCommandLatencies();
+
+    // Nanoseconds per batched run of create_parking_lot or add_truck, by command name.
+    Map<String, HistogramSummary> getBatchLatencies();
+
+    // Commands per batched run, by command name.
+    Map<String, HistogramSummary> getBatchSizes();
+
+    // Nodes a search walked past its first candidate, by what it looked for: not_full, waiting or ready.
+    Map<String, HistogramSummary> getFallbackChainLengths();
+
+    // Number of -1 results, by command name.
+    Map<String, Long> getMissCounts();
+
+    HistogramSummary getTrucksMovedPerLoad();
+
+    long getInsertRotations();
+
+    long getDeleteRotations();
+
+    int getTreeHeight();
+
+    void reset();
+}
@@ -0,0 +1,368 @@
+package parking;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Serves one parking network over a local TCP or Unix-domain socket, with the same line protocol
+ * as the input files: a client sends commands and gets one line back for each command with an output,
+ * in the order it sent them. Clients may send any number of commands without waiting for the replies.
+ *
+ * Every connection has a reader thread that parses its commands in batches into a bounded ring,
+ * and a sender thread that writes its replies. A single command loop thread takes the commands out of
+ * the ring and runs them on the engine, so the engine needs no locks. The replies to one connection
+ * are collected while a batch runs and handed to its sender in one piece.
+ * A full ring makes the readers wait. The command loop never waits for a sender: a connection whose
+ * replies pile up because its client does not read them stops reading that client's commands until its
+ * sender catches up, so only that client is held back.
+ */
+public class ParkingServer {
+    private static final int PARSE_BATCH = 1 << 12;
+    private static final int DEFAULT_RING_SIZE = 1 << 16;
+
+    // A connection stops reading commands while more reply bytes than this wait for its sender.
+    // The commands it already put into the ring can still add their replies on top.
+    private static final long MAX_UNSENT_BYTES = 1 << 22;
+
+    // Put into the ring after the last command of a connection.
+    private static final int CLOSE = -2;
+
+    private final ParkingEngine engine;
+    private final CommandRing ring;
+
+
+    public ParkingServer(ParkingEngine engine, int ringSize) {
+        this.engine = engine;
+        this.ring = new CommandRing(ringSize);
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        // --port [port] listens on localhost, --unix [path] on a Unix-domain socket instead.
+        // --primitive keeps the trucks in primitive arrays instead of Truck objects.
+        // --ring-size [commands] sets how many commands may wait for the command loop.
+        int port = 7070;
+        String unixPath = null;
+        boolean primitive = false;
+        int ringSize = DEFAULT_RING_SIZE;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--unix") && i + 1 < args.length) {
+                unixPath = args[++i];
+            } else if (arg.equals("--primitive")) {
+                primitive = true;
+            } else if (arg.equals("--ring-size") && i + 1 < args.length) {
+                ringSize = Integer.parseInt(args[++i]);
+            } else {
+                System.out.println("Unknown argument: " + arg);
+                return;
+            }
+        }
+
+        ParkingServer server = new ParkingServer(primitive ? new PrimitiveTruckTree() : new AVLTree(), ringSize);
+        ServerSocketChannel listener;
+        SocketAddress address;
+        if (unixPath != null) {
+            Path path = Paths.get(unixPath);
+            Files.deleteIfExists(path);
+            listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            address = UnixDomainSocketAddress.of(path);
+        } else {
+            listener = ServerSocketChannel.open();
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+        listener.bind(address);
+        System.out.println("Listening on " + address);
+        server.serve(listener);
+    }
+
+
+    // Runs the command loop and accepts connections until the listener is closed.
+    public void serve(ServerSocketChannel listener) throws IOException {
+        Thread commandLoop = new Thread(this::runCommandLoop, "command-loop");
+        commandLoop.setDaemon(true);
+        commandLoop.start();
+
+        while (listener.isOpen()) {
+            SocketChannel channel = listener.accept();
+            Connection connection = new Connection(channel);
+            startThread(connection::receive, "connection-reader");
+            startThread(connection::send, "connection-sender");
+        }
+    }
+
+    private static void startThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    // Takes the commands out of the ring and runs them, one batch at a time.
+    private void runCommandLoop() {
+        int[] opcodes = new int[ring.capacity()];
+        int[] firsts = new int[ring.capacity()];
+        int[] seconds = new int[ring.capacity()];
+        Connection[] owners = new Connection[ring.capacity()];
+        List<Connection> replying = new ArrayList<>();
+
+        try {
+            while (true) {
+                int count = ring.take(opcodes, firsts, seconds, owners);
+                for (int i = 0; i < count; i++) {
+                    Connection owner = owners[i];
+                    owners[i] = null;
+                    if (opcodes[i] == CLOSE) {
+                        owner.flush();
+                        owner.finish();
+                        continue;
+                    }
+                    Commands.execute(engine, opcodes[i], firsts[i], seconds[i], owner.replies);
+                    if (!owner.replying) {
+                        owner.replying = true;
+                        replying.add(owner);
+                    }
+                }
+
+                for (Connection connection : replying) {
+                    connection.replying = false;
+                    connection.flush();
+                }
+                replying.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * One client. The reader thread parses its commands into the ring, the command loop writes the
+     * replies into its sink and the sender thread writes them to the socket.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final BlockingQueue<byte[]> sendQueue = new LinkedBlockingQueue<>();
+
+        // Bytes in the send queue. The reader waits on drained while there are too many.
+        private long unsentBytes = 0;
+        private final ReentrantLock unsentLock = new ReentrantLock();
+        private final Condition drained = unsentLock.newCondition();
+
+        // Only used by the command loop.
+        private final ByteResultSink replies = new ByteResultSink(1 << 12);
+        private boolean replying = false;
+
+        // Tells the sender there is nothing more to send.
+        private final byte[] end = new byte[0];
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void receive() {
+            ChannelCommandParser parser = new ChannelCommandParser(channel);
+            int[] opcodes = new int[PARSE_BATCH];
+            int[] firsts = new int[PARSE_BATCH];
+            int[] seconds = new int[PARSE_BATCH];
+            try {
+                int count;
+                while (awaitDrained() && (count = parser.parse(opcodes, firsts, seconds)) > 0) {
+                    ring.put(this, opcodes, firsts, seconds, count);
+                }
+            } catch (IOException e) {
+                // The client went away. The commands it already sent still run.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                ring.put(this, new int[] {CLOSE}, new int[1], new int[1], 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Hands the collected replies to the sender. Called by the command loop, which must never wait
+        // for a client, so the queue is unbounded and the reader is held back instead.
+        void flush() {
+            if (replies.size() > 0) {
+                byte[] bytes = replies.takeBytes();
+                addUnsent(bytes.length);
+                sendQueue.add(bytes);
+            }
+        }
+
+        void finish() {
+            sendQueue.add(end);
+        }
+
+        private void addUnsent(long bytes) {
+            unsentLock.lock();
+            try {
+                unsentBytes += bytes;
+                if (unsentBytes <= MAX_UNSENT_BYTES) {
+                    drained.signal();
+                }
+            } finally {
+                unsentLock.unlock();
+            }
+        }
+
+        // Waits while too many replies are unsent. Returns true, so it can guard the read loop.
+        private boolean awaitDrained() throws InterruptedException {
+            unsentLock.lock();
+            try {
+                while (unsentBytes > MAX_UNSENT_BYTES) {
+                    drained.await();
+                }
+                return true;
+            } finally {
+                unsentLock.unlock();
+            }
+        }
+
+        void send() {
+            try {
+                while (true) {
+                    byte[] bytes = sendQueue.take();
+                    if (bytes == end) {
+                        break;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    addUnsent(-bytes.length);
+                }
+            } catch (IOException e) {
+                // The client went away. Its remaining replies are dropped.
+                drainUntilEnd();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to do with it.
+            }
+        }
+
+        // Keeps taking the replies off the queue, so a closed client's replies do not pile up and its
+        // reader does not wait for them.
+        private void drainUntilEnd() {
+            try {
+                byte[] bytes;
+                while ((bytes = sendQueue.take()) != end) {
+                    addUnsent(-bytes.length);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * A bounded ring of commands with the connection each came from. Many readers put commands in,
+     * the command loop takes them out. Every call moves a whole batch under one lock.
+     */
+    private static final class CommandRing {
+        private final int[] opcodes;
+        private final int[] firsts;
+        private final int[] seconds;
+        private final Connection[] owners;
+        private final int mask;
+
+        // Both only grow. The commands in the ring are at head to tail - 1, modulo the capacity.
+        private long head = 0;
+        private long tail = 0;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+
+        CommandRing(int size) {
+            // Rounded up to a power of two, so the index is a mask away.
+            int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+            opcodes = new int[capacity];
+            firsts = new int[capacity];
+            seconds = new int[capacity];
+            owners = new Connection[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        // Puts count commands in order, waiting for room while the ring is full.
+        void put(Connection owner, int[] opcodes, int[] firsts, int[] seconds, int count)
+                throws InterruptedException {
+            lock.lock();
+            try {
+                int done = 0;
+                while (done < count) {
+                    while (tail - head == capacity()) {
+                        notFull.await();
+                    }
+                    int room = (int) (capacity() - (tail - head));
+                    int end = done + Math.min(count - done, room);
+                    for (; done < end; done++) {
+                        int index = (int) (tail & mask);
+                        this.opcodes[index] = opcodes[done];
+                        this.firsts[index] = firsts[done];
+                        this.seconds[index] = seconds[done];
+                        this.owners[index] = owner;
+                        tail++;
+                    }
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Takes every command in the ring, up to the length of the arrays, waiting while it is empty.
+        int take(int[] opcodes, int[] firsts, int[] seconds, Connection[] owners) throws InterruptedException {
+            lock.lock();
+            try {
+                while (tail == head) {
+                    notEmpty.await();
+                }
+                int count = (int) Math.min(tail - head, opcodes.length);
+                for (int i = 0; i < count; i++) {
+                    int index = (int) (head & mask);
+                    opcodes[i] = this.opcodes[index];
+                    firsts[i] = this.firsts[index];
+                    seconds[i] = this.seconds[index];
+                    owners[i] = this.owners[index];
+                    this.owners[index] = null;
+                    head++;
+                }
+                notFull.signalAll();
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package parking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+
+/**
+ * Replays a command source on three threads. The parser thread decodes batches of commands into the
+ * slots of a ring, the executor thread, the only one that touches the engine, runs them and records
+ * their results as tokens in the slots of a second ring, and the writer thread encodes the tokens as
+ * text and writes them to the output in large chunks.
+ *
+ * Both rings have one producer and one consumer and a fixed number of slots allocated up front, so the
+ * stages exchange no objects. A full ring makes the stage in front of it wait, which is all the
+ * backpressure there is. The output is the same as Main.runBatched writes.
+ */
+public class PipelinedReplay {
+    private static final int BATCH_SIZE = 1 << 14;
+    private static final int SLOTS = 8;
+    // The writer hands its bytes to the stream once it has about this many.
+    private static final int WRITE_CHUNK = 1 << 20;
+
+    private final ParkingEngine engine;
+    private final CommandSource source;
+    private final OutputStream out;
+
+    private final SlotRing<CommandSlot> commands = new SlotRing<>(SLOTS, CommandSlot::new);
+    private final SlotRing<ResultSlot> results = new SlotRing<>(SLOTS, ResultSlot::new);
+
+    // The first exception of any stage. The other stages give up when they see it.
+    private volatile Throwable failure;
+
+    // Time each stage spent on its own work, waits excluded.
+    private long parseTime;
+    private long executeTime;
+    private long writeTime;
+
+
+    public PipelinedReplay(ParkingEngine engine, CommandSource source, OutputStream out) {
+        this.engine = engine;
+        this.source = source;
+        this.out = out;
+    }
+
+
+    // Runs the three stages until the source is done. Returns the number of commands read.
+    public long run() throws IOException {
+        long[] commandCount = new long[1];
+        Thread parser = new Thread(() -> guard(() -> commandCount[0] = parseAll()), "replay-parser");
+        Thread writer = new Thread(() -> guard(this::writeAll), "replay-writer");
+        parser.start();
+        writer.start();
+        guard(this::executeAll);
+
+        joinQuietly(parser);
+        joinQuietly(writer);
+        try {
+            source.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Pipelined replay failed", failure);
+        }
+
+        System.out.println("Parse time: " + parseTime / 1e9 + " seconds");
+        System.out.println("Execution time: " + executeTime / 1e9 + " seconds");
+        System.out.println("Write time: " + writeTime / 1e9 + " seconds");
+        return commandCount[0];
+    }
+
+
+    // Parser stage. An empty slot marks the end of the input.
+    private long parseAll() throws IOException {
+        long commandCount = 0;
+        while (true) {
+            CommandSlot slot = commands.claim(this);
+            long start = System.nanoTime();
+            slot.count = source.parse(slot.opcodes, slot.firsts, slot.seconds);
+            parseTime += System.nanoTime() - start;
+            commandCount += slot.count;
+            commands.publish();
+            if (slot.count == 0) {
+                return commandCount;
+            }
+        }
+    }
+
+    // Executor stage. Every command batch gives one result batch, the end marker included.
+    private void executeAll() {
+        Main.CommandRun pendingRun = new Main.CommandRun();
+        while (true) {
+            CommandSlot slot = commands.take(this);
+            ResultSlot result = results.claim(this);
+            long start = System.nanoTime();
+            result.tokens.clear();
+            result.last = slot.count == 0;
+            if (result.last) {
+                pendingRun.flushTo(engine, result.tokens);
+            } else {
+                Main.executeBatch(engine, slot.opcodes, slot.firsts, slot.seconds, slot.count, pendingRun, result.tokens);
+            }
+            executeTime += System.nanoTime() - start;
+            commands.release();
+            results.publish();
+            if (result.last) {
+                return;
+            }
+        }
+    }
+
+    // Writer stage.
+    private void writeAll() throws IOException {
+        ByteResultSink sink = new ByteResultSink(WRITE_CHUNK + (WRITE_CHUNK >> 2));
+        while (true) {
+            ResultSlot result = results.take(this);
+            long start = System.nanoTime();
+            boolean last = result.last;
+            result.tokens.replayTo(sink);
+            results.release();
+            if (last || sink.size() >= WRITE_CHUNK) {
+                sink.writeTo(out);
+            }
+            writeTime += System.nanoTime() - start;
+            if (last) {
+                return;
+            }
+        }
+    }
+
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private void guard(Stage stage) {
+        try {
+            stage.run();
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+
+
+    private static final class CommandSlot {
+        final int[] opcodes = new int[BATCH_SIZE];
+        final int[] firsts = new int[BATCH_SIZE];
+        final int[] seconds = new int[BATCH_SIZE];
+        int count;
+    }
+
+    private static final class ResultSlot {
+        final TokenSink tokens = new TokenSink();
+        // True for the result of the end marker.
+        boolean last;
+    }
+
+
+    /**
+     * A ResultSink that records the calls instead of encoding them, so the encoding can happen on the
+     * writer thread. Values and the kind of every call go into growable parallel arrays.
+     */
+    private static final class TokenSink implements ResultSink {
+        private static final byte VALUE = 0;
+        private static final byte SEPARATOR = 1;
+        private static final byte END_LINE = 2;
+
+        private int[] values = new int[BATCH_SIZE * 2];
+        private byte[] kinds = new byte[BATCH_SIZE * 2];
+        private int size = 0;
+
+        @Override
+        public void writeInt(int value) {
+            add(VALUE, value);
+        }
+
+        @Override
+        public void writeSeparator() {
+            add(SEPARATOR, 0);
+        }
+
+        @Override
+        public void endLine() {
+            add(END_LINE, 0);
+        }
+
+        private void add(byte kind, int value) {
+            if (size == kinds.length) {
+                values = Arrays.copyOf(values, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            values[size] = value;
+            kinds[size] = kind;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        // Makes the same calls on another sink, in order.
+        void replayTo(ResultSink sink) {
+            for (int i = 0; i < size; i++) {
+                switch (kinds[i]) {
+                    case VALUE:
+                        sink.writeInt(values[i]);
+                        break;
+                    case SEPARATOR:
+                        sink.writeSeparator();
+                        break;
+                    default:
+                        sink.endLine();
+                        break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A ring of slots allocated up front, for one producer and one consumer. The producer claims the slot
+     * at the tail, fills it and publishes it. The consumer takes the slot at the head, reads it and releases
+     * it for reuse. A producer waits while every slot is in use, a consumer while none is published.
+     */
+    private static final class SlotRing<T> {
+        private final Object[] slots;
+        private final int mask;
+
+        // Both only grow. The published slots are at head to tail - 1, modulo the number of slots.
+        private volatile long head = 0;
+        private volatile long tail = 0;
+
+        SlotRing(int size, Supplier<T> factory) {
+            slots = new Object[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = factory.get();
+            }
+            mask = size - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T claim(PipelinedReplay replay) {
+            for (int round = 0; tail - head == slots.length; round++) {
+                idle(replay, round);
+            }
+            return (T) slots[(int) (tail & mask)];
+        }
+
+        void publish() {
+            tail = tail + 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T take(PipelinedReplay replay) {
+            for (int round = 0; head == tail; round++) {
+                idle(replay, round);
+            }
+            return (T) slots[(int) (head & mask)];
+        }
+
+        void release() {
+            head = head + 1;
+        }
+
+        // Spins briefly, then yields, then sleeps in short steps. Gives up if another stage failed.
+        private static void idle(PipelinedReplay replay, int round) {
+            if (replay.failure != null) {
+                throw new IllegalStateException("Another stage failed");
+            }
+            if (round < 64) {
+                Thread.onSpinWait();
+            } else if (round < 128) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+    }
+}
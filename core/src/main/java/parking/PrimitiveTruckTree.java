@@ -0,0 +1,184 @@
+package parking;
+
+import java.io.IOException;
+
+
+/**
+ * An AVLTree that keeps its trucks in a TruckStore instead of Truck objects.
+ * Each lot queues TruckStore slots in IntRingQueues, so add_truck, ready, load and reAdd_truck
+ * allocate nothing once the arrays have grown to the working set.
+ */
+public class PrimitiveTruckTree extends AVLTree {
+    private final TruckStore trucks = new TruckStore();
+
+
+    @Override
+    ParkingLot newParkingLot(int capacity, int truckLimit) {
+        return new ParkingLot(capacity, truckLimit, true);
+    }
+
+
+    @Override
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        Node node = bestFitNode(capacity);
+
+        if (node == null) {
+            sink.writeInt(-1);
+            ParkingMetrics.recordMiss(Commands.ADD_TRUCK);
+        } else {
+            addToWaiting(node, trucks.allocate(truck_id, capacity));
+            sink.writeInt(node.parkingLot.getCapacity());
+        }
+        publish();
+    }
+
+
+    @Override
+    public void ready(int capacity, ResultSink sink) {
+        Node node = waitingNode(capacity);
+
+        if (node == null) {
+            sink.writeInt(-1);
+            ParkingMetrics.recordMiss(Commands.READY);
+        } else {
+            ParkingLot lotChosen = node.parkingLot;
+            int slot = lotChosen.waitingSlots.dequeue();
+            lotChosen.readySlots.enqueue(slot);
+            updatePath(node);
+
+            sink.writeInt(trucks.getId(slot));
+            sink.writeInt(trucks.getLotCapacity(slot));
+        }
+        publish();
+    }
+
+
+    // A load reads and takes the TruckStore slots instead of Truck objects. AVLTree.load does the rest.
+    @Override
+    int readyCapacity(ParkingLot parkingLot) {
+        return trucks.getCapacity(parkingLot.readySlots.peek());
+    }
+
+    @Override
+    int readyLoad(ParkingLot parkingLot) {
+        return trucks.getLoad(parkingLot.readySlots.peek());
+    }
+
+    @Override
+    void takeReady(ParkingLot parkingLot, int load, LoadPlan plan) {
+        int slot = parkingLot.readySlots.dequeue();
+        trucks.setLoad(slot, load);
+        plan.addSlot(slot, trucks.getId(slot), trucks.getCapacity(slot) - load);
+    }
+
+    @Override
+    void placeFilledTruck(LoadPlan plan, int i, ParkingLot lotChosen) {
+        int slot = plan.slots[i];
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waitingSlots.enqueue(slot);
+        trucks.setLotCapacity(slot, lotChosen.getCapacity());
+    }
+
+    // The id is already in the plan, so the slot can go.
+    @Override
+    void dropFilledTruck(LoadPlan plan, int i) {
+        trucks.free(plan.slots[i]);
+    }
+
+
+    @Override
+    void placeNewTruck(ParkingLot lotChosen, int truck_id, int capacity) {
+        int slot = trucks.allocate(truck_id, capacity);
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waitingSlots.enqueue(slot);
+        trucks.setLotCapacity(slot, lotChosen.getCapacity());
+    }
+
+
+    // Same checkpoint encoding as AVLTree, read from the slots.
+    @Override
+    void writeTrucks(ParkingLot parkingLot, Checkpoint.Writer writer) throws IOException {
+        for (int i = 0; i < parkingLot.waitingSlots.size(); i++) {
+            writeSlot(parkingLot.waitingSlots.get(i), writer);
+        }
+        for (int i = 0; i < parkingLot.readySlots.size(); i++) {
+            writeSlot(parkingLot.readySlots.get(i), writer);
+        }
+    }
+
+    private void writeSlot(int slot, Checkpoint.Writer writer) throws IOException {
+        writer.writeInt(trucks.getId(slot));
+        writer.writeInt(trucks.getCapacity(slot));
+        writer.writeInt(trucks.getLoad(slot));
+    }
+
+    @Override
+    void readTrucks(ParkingLot parkingLot, int waitingCount, int readyCount, Checkpoint.Reader reader)
+            throws IOException {
+        for (int i = 0; i < waitingCount + readyCount; i++) {
+            int slot = trucks.allocate(reader.readInt(), reader.readInt());
+            trucks.setLoad(slot, reader.readInt());
+            trucks.setLotCapacity(slot, parkingLot.getCapacity());
+            if (i < waitingCount) {
+                parkingLot.waitingSlots.enqueue(slot);
+            } else {
+                parkingLot.readySlots.enqueue(slot);
+            }
+        }
+    }
+
+
+    // Stores the truck in a slot and adds it back like AVLTree.reAdd_truck.
+    @Override
+    void moveTruck(ParkingLot from, ParkingLot to) {
+        int slot;
+        if (from.waitingSlots.size() != 0) {
+            slot = from.waitingSlots.dequeue();
+            to.waitingSlots.enqueue(slot);
+        } else {
+            slot = from.readySlots.dequeue();
+            to.readySlots.enqueue(slot);
+        }
+        trucks.setLotCapacity(slot, to.getCapacity());
+        to.setOccupiedCapacity(to.getOccupiedCapacity() + 1);
+    }
+
+    @Override
+    void dropTrucks(ParkingLot removed) {
+        while (removed.waitingSlots.size() != 0) {
+            trucks.free(removed.waitingSlots.dequeue());
+        }
+        while (removed.readySlots.size() != 0) {
+            trucks.free(removed.readySlots.dequeue());
+        }
+    }
+
+
+    @Override
+    public int reAdd_truck(Truck truck) {
+        int slot = trucks.allocate(truck.getId(), truck.getCapacity());
+        trucks.setLoad(slot, truck.getLoad());
+        return reAddSlot(slot);
+    }
+
+    // Adds the truck in the slot back, returns the ParkingLot's capacity or -1.
+    // A truck that finds no lot leaves the system and its slot is freed.
+    private int reAddSlot(int slot) {
+        Node node = bestFitNode(trucks.getCapacity(slot) - trucks.getLoad(slot));
+
+        if (node == null) {
+            trucks.free(slot);
+            return -1;
+        }
+        addToWaiting(node, slot);
+        return node.parkingLot.getCapacity();
+    }
+
+    private void addToWaiting(Node node, int slot) {
+        ParkingLot lotChosen = node.parkingLot;
+        lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() + 1);
+        lotChosen.waitingSlots.enqueue(slot);
+        trucks.setLotCapacity(slot, lotChosen.getCapacity());
+        updatePath(node);
+    }
+}
@@ -0,0 +1,18 @@
+package parking;
+
+/**
+ * Receives the output of the tree commands without building intermediate Strings.
+ * Values written one after another belong to the same group and are separated by a space,
+ * groups are separated by " - " (as in load), and the caller ends each command's line.
+ */
+public interface ResultSink {
+
+    // Writes a value into the current group.
+    void writeInt(int value);
+
+    // Starts a new group on the same line.
+    void writeSeparator();
+
+    // Ends the current line.
+    void endLine();
+}
@@ -0,0 +1,559 @@
+package parking;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * A parking network split by capacity into shards, each an AVLTree of its own with its own worker thread.
+ * Every lot of shard i has a smaller capacity than every lot of shard i + 1.
+ *
+ * A batch of commands is cut at every load and delete_parking_lot. Between two loads each worker runs the commands of its
+ * shard in input order, in parallel with the others. A command that falls back to a neighbouring shard
+ * is handed over explicitly: add_truck moves down to the next lower shard if its own shard has no
+ * lot for the truck, and ready moves up to the next higher shard. The worker of that shard waits at the
+ * command until the hand-off decides it. count is summed over its shard and all higher ones.
+ * load can move trucks into any shard and delete_parking_lot into any lower one, so both run alone
+ * between two parallel parts.
+ * The output is the same as running the commands one by one on a single AVLTree.
+ */
+public class ShardedParkingNetwork implements ParkingEngine, AutoCloseable {
+    // Segments shorter than this run on the calling thread, the workers would cost more than they save.
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    // Hand-off state of a command that every shard is done with.
+    private static final int DONE = -1;
+
+    private final int[] lowerBounds;
+    private final AVLTree[] shards;
+    private final LotCursor[] loadCursors;
+    private final LoadPlan loadPlan = new LoadPlan();
+    private final LoadLots loadLots = new ShardLoadLots();
+    private final ExecutorService workers;
+    private final List<Callable<Void>> workerTasks = new ArrayList<>();
+
+    // The segment the workers are running, shared with them.
+    private int[] opcodes;
+    private int[] firsts;
+    private int[] seconds;
+    private int[][] shardCommands;
+    private int[] shardCommandCounts;
+    private AtomicIntegerArray turns;
+    private int[] results;
+    private int[] secondResults;
+    private int[][] partialCounts;
+
+
+    // Creates a network with one shard per bound. Shard i holds the capacities from lowerBounds[i]
+    // up to lowerBounds[i + 1], the first shard also everything below its bound.
+    public ShardedParkingNetwork(int[] lowerBounds) {
+        this.lowerBounds = lowerBounds.clone();
+        int shardCount = lowerBounds.length;
+        shards = new AVLTree[shardCount];
+        loadCursors = new LotCursor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new AVLTree();
+            loadCursors[i] = shards[i].cursor();
+        }
+
+        workers = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "shard-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            workerTasks.add(() -> {
+                runShard(shard);
+                return null;
+            });
+        }
+        shardCommands = new int[shardCount][16];
+        shardCommandCounts = new int[shardCount];
+        partialCounts = new int[shardCount][];
+    }
+
+    // Splits the capacities of the lots an input creates into shards holding about as many lots each.
+    public static ShardedParkingNetwork forInput(CommandSource source, int shardCount) throws IOException {
+        int batch = 1 << 14;
+        int[] opcodes = new int[batch];
+        int[] firsts = new int[batch];
+        int[] seconds = new int[batch];
+        int[] capacities = new int[batch];
+        int lots = 0;
+
+        try (CommandSource parser = source) {
+            int count;
+            while ((count = parser.parse(opcodes, firsts, seconds)) != 0) {
+                for (int i = 0; i < count; i++) {
+                    if (opcodes[i] == Commands.CREATE_PARKING_LOT) {
+                        if (lots == capacities.length) {
+                            capacities = Arrays.copyOf(capacities, lots * 2);
+                        }
+                        capacities[lots++] = firsts[i];
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(capacities, 0, lots);
+        int[] bounds = new int[Math.max(1, Math.min(shardCount, lots))];
+        bounds[0] = Integer.MIN_VALUE;
+        int shards = 1;
+        for (int i = 1; i < bounds.length; i++) {
+            int bound = capacities[(int) ((long) lots * i / bounds.length)];
+            // Repeated capacities can make two quantiles equal, those shards are merged.
+            if (bound > bounds[shards - 1]) {
+                bounds[shards++] = bound;
+            }
+        }
+        return new ShardedParkingNetwork(Arrays.copyOf(bounds, shards));
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Returns the shard the given capacity belongs to.
+    int shardOf(int capacity) {
+        int low = 0;
+        int high = lowerBounds.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lowerBounds[middle] <= capacity) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+
+    public void create_parking_lot(int capacity, int truckLimit) {
+        shards[shardOf(capacity)].create_parking_lot(capacity, truckLimit);
+    }
+
+    public void delete(int capacity) {
+        shards[shardOf(capacity)].delete(capacity);
+    }
+
+    // The trucks fill the smaller lots of the lot's own shard first, then go on into the lower shards.
+    public void delete_parking_lot(int capacity) {
+        int home = shardOf(capacity);
+        ParkingLot removed = shards[home].remove(capacity);
+        if (removed == null) {
+            return;
+        }
+        for (int shard = home; shard >= 0 && removed.getWaitingCount() + removed.getReadyCount() != 0; shard--) {
+            shards[shard].rehomeTrucks(removed, (shard == home) ? capacity : Integer.MAX_VALUE);
+        }
+        shards[home].dropTrucks(removed);
+    }
+
+    // The truck goes to the best fit in its own shard, otherwise to the biggest lot that is not full in a lower one.
+    public void add_truck(int truck_id, int capacity, ResultSink sink) {
+        for (int shard = shardOf(capacity); shard >= 0; shard--) {
+            if (shards[shard].bestFitNode(capacity) != null) {
+                shards[shard].add_truck(truck_id, capacity, sink);
+                return;
+            }
+        }
+        sink.writeInt(-1);
+    }
+
+    // The truck comes from the first lot with a waiting truck in its own shard, otherwise from a higher one.
+    public void ready(int capacity, ResultSink sink) {
+        for (int shard = shardOf(capacity); shard < shards.length; shard++) {
+            if (shards[shard].waitingNode(capacity) != null) {
+                shards[shard].ready(capacity, sink);
+                return;
+            }
+        }
+        sink.writeInt(-1);
+    }
+
+    public void count(int capacity, ResultSink sink) {
+        int totalCount = 0;
+        for (int shard = shardOf(capacity); shard < shards.length; shard++) {
+            totalCount += shards[shard].countAbove(capacity);
+        }
+        sink.writeInt(totalCount);
+    }
+
+    public void count_range(int low, int high, ResultSink sink) {
+        sink.writeInt(countRange(low, high));
+    }
+
+    private int countRange(int low, int high) {
+        if (low > high) {
+            return 0;
+        }
+        int totalCount = 0;
+        for (int shard = shardOf(low); shard <= shardOf(high); shard++) {
+            totalCount += shards[shard].countRange(low, high);
+        }
+        return totalCount;
+    }
+
+
+    // Same as AVLTree.load, with the cursor moving on to the higher shards and the trucks
+    // going back to the best fit in any shard.
+    public void load(int capacity, int loadAmount, ResultSink sink) {
+        loadPlan.run(loadLots, capacity, loadAmount, sink);
+    }
+
+    // The lots a load walks, through the load cursor of one shard after the other.
+    private final class ShardLoadLots implements LoadLots {
+        private int shard;
+        private LotCursor cursor;
+
+        @Override
+        public boolean seekReady(int capacity) {
+            shard = shardOf(capacity);
+            cursor = loadCursors[shard];
+            if (cursor.seekCeiling(capacity) && !shards[shard].hasReady(cursor.getParkingLot())) {
+                cursor.nextWithReady();
+            }
+            return nextShardIfDone();
+        }
+
+        @Override
+        public boolean nextReady() {
+            cursor.nextWithReady();
+            return nextShardIfDone();
+        }
+
+        // Every lot of a higher shard is above the capacity, so the search goes on from its first lot.
+        private boolean nextShardIfDone() {
+            while (!cursor.isValid() && shard < shards.length - 1) {
+                shard++;
+                cursor = loadCursors[shard];
+                if (cursor.seekCeiling(Integer.MIN_VALUE) && !shards[shard].hasReady(cursor.getParkingLot())) {
+                    cursor.nextWithReady();
+                }
+            }
+            return cursor.isValid();
+        }
+
+        @Override
+        public int lotCapacity() {
+            return cursor.getParkingLot().getCapacity();
+        }
+
+        @Override
+        public boolean hasReady() {
+            return shards[shard].hasReady(cursor.getParkingLot());
+        }
+
+        @Override
+        public int readyCapacity() {
+            return shards[shard].readyCapacity(cursor.getParkingLot());
+        }
+
+        @Override
+        public int readyLoad() {
+            return shards[shard].readyLoad(cursor.getParkingLot());
+        }
+
+        @Override
+        public void takeReady(int load, LoadPlan plan) {
+            shards[shard].takeReady(cursor.getParkingLot(), load, plan);
+        }
+
+        @Override
+        public void tookReady(int count) {
+            ParkingLot lotChosen = cursor.getParkingLot();
+            lotChosen.setOccupiedCapacity(lotChosen.getOccupiedCapacity() - count);
+            shards[shard].updatePath(cursor.getNode());
+        }
+
+        @Override
+        public void place(LoadPlan plan) {
+            for (int i = 0; i < plan.count; i++) {
+                plan.destinations[i] = reAdd_truck(plan.trucks[i]);
+            }
+        }
+    }
+
+    // Adds the truck back to the best fit for its free space, looking into lower shards if needed.
+    private int reAdd_truck(Truck truck) {
+        int space = truck.getCapacity() - truck.getLoad();
+        for (int shard = shardOf(space); shard >= 0; shard--) {
+            int whereAdded = shards[shard].reAdd_truck(truck);
+            if (whereAdded != -1) {
+                return whereAdded;
+            }
+        }
+        return -1;
+    }
+
+
+    // Finds the biggest lot below the capacity that is not full, moving on to the lower shards.
+    public ParkingLot smallerBiggest(int capacity) {
+        for (int shard = shardOf(capacity); shard >= 0; shard--) {
+            ParkingLot parkingLot = shards[shard].smallerBiggest(capacity);
+            if (parkingLot != null) {
+                return parkingLot;
+            }
+        }
+        return null;
+    }
+
+    // Finds the smallest lot above the capacity with a ready truck, moving on to the higher shards.
+    public ParkingLot smallestBiggerHasReady(int capacity) {
+        for (int shard = shardOf(capacity); shard < shards.length; shard++) {
+            ParkingLot parkingLot = shards[shard].smallestBiggerHasReady(capacity);
+            if (parkingLot != null) {
+                return parkingLot;
+            }
+        }
+        return null;
+    }
+
+    // Finds the smallest lot above the capacity with a waiting truck, moving on to the higher shards.
+    public ParkingLot smallestBiggerHasWaiting(int capacity) {
+        for (int shard = shardOf(capacity); shard < shards.length; shard++) {
+            ParkingLot parkingLot = shards[shard].smallestBiggerHasWaiting(capacity);
+            if (parkingLot != null) {
+                return parkingLot;
+            }
+        }
+        return null;
+    }
+
+
+    // Runs count parsed commands and writes their output lines in input order.
+    public void execute(int[] opcodes, int[] firsts, int[] seconds, int count, ResultSink sink) {
+        int start = 0;
+        for (int i = 0; i <= count; i++) {
+            if (i < count && opcodes[i] != Commands.LOAD && opcodes[i] != Commands.DELETE_PARKING_LOT) {
+                continue;
+            }
+            if (i - start < PARALLEL_THRESHOLD || shards.length == 1) {
+                for (int j = start; j < i; j++) {
+                    Commands.execute(this, opcodes[j], firsts[j], seconds[j], sink);
+                }
+            } else {
+                executeParallel(opcodes, firsts, seconds, start, i, sink);
+            }
+            if (i < count) {
+                Commands.execute(this, opcodes[i], firsts[i], seconds[i], sink);
+            }
+            start = i + 1;
+        }
+    }
+
+    // Runs the commands from..to, none of them a load or a delete_parking_lot, on the workers.
+    private void executeParallel(int[] opcodes, int[] firsts, int[] seconds, int from, int to, ResultSink sink) {
+        this.opcodes = opcodes;
+        this.firsts = firsts;
+        this.seconds = seconds;
+        if (results == null || results.length < opcodes.length) {
+            results = new int[opcodes.length];
+            secondResults = new int[opcodes.length];
+            turns = new AtomicIntegerArray(opcodes.length);
+            for (int shard = 0; shard < shards.length; shard++) {
+                partialCounts[shard] = new int[opcodes.length];
+            }
+        }
+
+        // Every shard gets the commands it may take part in, in input order. The hand-off of add_truck
+        // and ready starts at the command's own shard.
+        Arrays.fill(shardCommandCounts, 0);
+        for (int i = from; i < to; i++) {
+            switch (opcodes[i]) {
+                case Commands.CREATE_PARKING_LOT:
+                    addShardCommand(shardOf(firsts[i]), i);
+                    break;
+                case Commands.ADD_TRUCK: {
+                    int home = shardOf(seconds[i]);
+                    turns.set(i, home);
+                    for (int shard = home; shard >= 0; shard--) {
+                        addShardCommand(shard, i);
+                    }
+                    break;
+                }
+                case Commands.READY: {
+                    int home = shardOf(firsts[i]);
+                    turns.set(i, home);
+                    for (int shard = home; shard < shards.length; shard++) {
+                        addShardCommand(shard, i);
+                    }
+                    break;
+                }
+                case Commands.COUNT:
+                    for (int shard = shardOf(firsts[i]); shard < shards.length; shard++) {
+                        addShardCommand(shard, i);
+                    }
+                    break;
+                case Commands.COUNT_RANGE:
+                    if (firsts[i] <= seconds[i]) {
+                        for (int shard = shardOf(firsts[i]); shard <= shardOf(seconds[i]); shard++) {
+                            addShardCommand(shard, i);
+                        }
+                    }
+                    break;
+            }
+        }
+
+        try {
+            for (Future<Void> future : workers.invokeAll(workerTasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the shards were running", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A shard worker failed", e.getCause());
+        }
+
+        for (int i = from; i < to; i++) {
+            switch (opcodes[i]) {
+                case Commands.ADD_TRUCK:
+                    sink.writeInt(results[i]);
+                    sink.endLine();
+                    break;
+                case Commands.READY:
+                    sink.writeInt(results[i]);
+                    if (results[i] != -1) {
+                        sink.writeInt(secondResults[i]);
+                    }
+                    sink.endLine();
+                    break;
+                case Commands.COUNT:
+                    int totalCount = 0;
+                    for (int shard = shardOf(firsts[i]); shard < shards.length; shard++) {
+                        totalCount += partialCounts[shard][i];
+                    }
+                    sink.writeInt(totalCount);
+                    sink.endLine();
+                    break;
+                case Commands.COUNT_RANGE:
+                    int rangeCount = 0;
+                    if (firsts[i] <= seconds[i]) {
+                        for (int shard = shardOf(firsts[i]); shard <= shardOf(seconds[i]); shard++) {
+                            rangeCount += partialCounts[shard][i];
+                        }
+                    }
+                    sink.writeInt(rangeCount);
+                    sink.endLine();
+                    break;
+            }
+        }
+    }
+
+    private void addShardCommand(int shard, int command) {
+        int size = shardCommandCounts[shard];
+        if (size == shardCommands[shard].length) {
+            shardCommands[shard] = Arrays.copyOf(shardCommands[shard], size * 2);
+        }
+        shardCommands[shard][size] = command;
+        shardCommandCounts[shard] = size + 1;
+    }
+
+
+    // The work of one shard's worker: its commands in input order.
+    private void runShard(int shard) {
+        AVLTree tree = shards[shard];
+        int[] commands = shardCommands[shard];
+        int[] partial = partialCounts[shard];
+        ResultCapture capture = new ResultCapture();
+
+        for (int c = 0; c < shardCommandCounts[shard]; c++) {
+            int i = commands[c];
+            switch (opcodes[i]) {
+                case Commands.CREATE_PARKING_LOT:
+                    tree.create_parking_lot(firsts[i], seconds[i]);
+                    break;
+                case Commands.ADD_TRUCK:
+                    if (!awaitTurn(i, shard)) {
+                        break;
+                    }
+                    capture.clear();
+                    tree.add_truck(firsts[i], seconds[i], capture);
+                    results[i] = capture.first;
+                    // Not placed here, so the next lower shard gets its turn.
+                    turns.set(i, (capture.first == -1 && shard > 0) ? shard - 1 : DONE);
+                    break;
+                case Commands.READY:
+                    if (!awaitTurn(i, shard)) {
+                        break;
+                    }
+                    capture.clear();
+                    tree.ready(firsts[i], capture);
+                    results[i] = capture.first;
+                    secondResults[i] = capture.second;
+                    turns.set(i, (capture.first == -1 && shard < shards.length - 1) ? shard + 1 : DONE);
+                    break;
+                case Commands.COUNT:
+                    partial[i] = tree.countAbove(firsts[i]);
+                    break;
+                case Commands.COUNT_RANGE:
+                    partial[i] = tree.countRange(firsts[i], seconds[i]);
+                    break;
+            }
+        }
+    }
+
+    // Waits until the hand-off of the command reaches this shard or is decided before it.
+    // Returns true if it is this shard's turn.
+    private boolean awaitTurn(int command, int shard) {
+        int spins = 0;
+        while (true) {
+            int turn = turns.get(command);
+            if (turn == shard) {
+                return true;
+            }
+            if (turn == DONE) {
+                return false;
+            }
+            if (++spins % 64 == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+
+    // Stops the worker threads.
+    public void close() {
+        workers.shutdown();
+    }
+
+
+    // Keeps the first two ints a command writes, which is all add_truck and ready write.
+    private static class ResultCapture implements ResultSink {
+        int first;
+        int second;
+        int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        public void writeInt(int value) {
+            if (size == 0) {
+                first = value;
+            } else if (size == 1) {
+                second = value;
+            }
+            size++;
+        }
+
+        public void writeSeparator() {
+        }
+
+        public void endLine() {
+        }
+    }
+}
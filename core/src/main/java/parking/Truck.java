@@ -1,3 +1,5 @@
+package parking;
+
 public class Truck {
 
     //keeps the node truck is in.
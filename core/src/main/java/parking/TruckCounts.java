@@ -0,0 +1,24 @@
+package parking;
+
+/**
+ * Truck counts by lot capacity, for the trees and indexes that keep the number of trucks per subtree.
+ * count_range of every engine goes through countRange, so the bounds are handled in one place.
+ */
+public interface TruckCounts {
+
+    // Returns the number of trucks in the lots with a capacity strictly greater than the given one.
+    int countAbove(int capacity);
+
+    // Returns the number of trucks in all lots.
+    int totalTrucks();
+
+    // Returns the number of trucks in the lots with a capacity between low and high, both inclusive.
+    // No capacity is below Integer.MIN_VALUE, so from there on it is every truck, low - 1 would wrap around.
+    default int countRange(int low, int high) {
+        if (low > high) {
+            return 0;
+        }
+        int fromLow = (low == Integer.MIN_VALUE) ? totalTrucks() : countAbove(low - 1);
+        return fromLow - countAbove(high);
+    }
+}
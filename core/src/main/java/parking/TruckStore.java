@@ -0,0 +1,101 @@
+package parking;
+
+/**
+ * Stores trucks as parallel int arrays instead of Truck objects.
+ * A truck is addressed by its slot. Slots of trucks that leave the system are reused.
+ */
+public class TruckStore {
+    private int[] ids;
+    private int[] capacities;
+    private int[] loads;
+    // Capacity of the ParkingLot the truck is in. Lots are keyed by capacity.
+    private int[] lotCapacities;
+
+    // Slots that were used up to now, and a stack of the ones that were freed.
+    private int used = 0;
+    private int[] freeSlots;
+    private int freeCount = 0;
+
+
+    public TruckStore() {
+        this(1024);
+    }
+
+    public TruckStore(int initialCapacity) {
+        int length = Math.max(initialCapacity, 16);
+        ids = new int[length];
+        capacities = new int[length];
+        loads = new int[length];
+        lotCapacities = new int[length];
+        freeSlots = new int[length];
+    }
+
+
+    // Stores a new empty truck and returns its slot.
+    public int allocate(int id, int capacity) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (used == ids.length) {
+                grow();
+            }
+            slot = used++;
+        }
+        ids[slot] = id;
+        capacities[slot] = capacity;
+        loads[slot] = 0;
+        lotCapacities[slot] = 0;
+        return slot;
+    }
+
+    // Frees the slot of a truck that left the system.
+    public void free(int slot) {
+        if (freeCount == freeSlots.length) {
+            int[] bigger = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, 0, bigger, 0, freeCount);
+            freeSlots = bigger;
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    public int getCapacity(int slot) {
+        return capacities[slot];
+    }
+
+    public int getLoad(int slot) {
+        return loads[slot];
+    }
+
+    public int getLotCapacity(int slot) {
+        return lotCapacities[slot];
+    }
+
+    public void setLoad(int slot, int load) {
+        loads[slot] = load;
+    }
+
+    public void setLotCapacity(int slot, int lotCapacity) {
+        lotCapacities[slot] = lotCapacity;
+    }
+
+
+    private void grow() {
+        int length = ids.length * 2;
+        ids = copyOf(ids, length);
+        capacities = copyOf(capacities, length);
+        loads = copyOf(loads, length);
+        lotCapacities = copyOf(lotCapacities, length);
+    }
+
+    private int[] copyOf(int[] array, int length) {
+        int[] bigger = new int[length];
+        System.arraycopy(array, 0, bigger, 0, array.length);
+        return bigger;
+    }
+}
@@ -0,0 +1,98 @@
+package parking;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
+
+/**
+ * Compares the bytes allocated by the Truck object graph (AVLTree) and the primitive
+ * truck store (PrimitiveTruckTree) while replaying the same input.
+ * Usage: java -cp core/target/test-classes:core/target/classes parking.AllocationComparison [filepath] [rounds]
+ */
+public class AllocationComparison {
+
+    public static void main(String[] args) throws IOException {
+        String inputFileName = (args.length > 0) ? args[0] : "inputs/type5.txt";
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        // Parse everything up front so only the tree work is measured.
+        int batch = 1 << 14;
+        int[] batchOpcodes = new int[batch];
+        int[] batchFirsts = new int[batch];
+        int[] batchSeconds = new int[batch];
+        int[] opcodes = new int[batch];
+        int[] firsts = new int[batch];
+        int[] seconds = new int[batch];
+        int count = 0;
+        try (MappedCommandParser parser = new MappedCommandParser(Paths.get(inputFileName))) {
+            int parsed;
+            while ((parsed = parser.parse(batchOpcodes, batchFirsts, batchSeconds)) != 0) {
+                if (count + parsed > opcodes.length) {
+                    opcodes = grow(opcodes);
+                    firsts = grow(firsts);
+                    seconds = grow(seconds);
+                }
+                System.arraycopy(batchOpcodes, 0, opcodes, count, parsed);
+                System.arraycopy(batchFirsts, 0, firsts, count, parsed);
+                System.arraycopy(batchSeconds, 0, seconds, count, parsed);
+                count += parsed;
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        ByteResultSink sink = new ByteResultSink(1 << 24);
+
+        System.out.println(count + " commands from " + inputFileName);
+        for (int round = 1; round <= rounds; round++) {
+            for (int engine = 0; engine < 2; engine++) {
+                AVLTree avlTree = (engine == 0) ? new AVLTree() : new PrimitiveTruckTree();
+                sink.clear();
+
+                // Lot creation is counted apart from the truck commands, the counter is only
+                // read where a run of one kind ends so the measurement itself allocates nothing.
+                long createBytes = 0;
+                long truckBytes = 0;
+                boolean creating = true;
+                long bytesBefore = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    boolean create = opcodes[i] == Commands.CREATE_PARKING_LOT;
+                    if (create != creating) {
+                        long bytesNow = threads.getThreadAllocatedBytes(thread);
+                        if (creating) {
+                            createBytes += bytesNow - bytesBefore;
+                        } else {
+                            truckBytes += bytesNow - bytesBefore;
+                        }
+                        bytesBefore = bytesNow;
+                        creating = create;
+                    }
+                    Commands.execute(avlTree, opcodes[i], firsts[i], seconds[i], sink);
+                    if (sink.size() >= (1 << 23)) {
+                        sink.clear();
+                    }
+                }
+                long time = System.nanoTime() - start;
+                long bytesNow = threads.getThreadAllocatedBytes(thread);
+                if (creating) {
+                    createBytes += bytesNow - bytesBefore;
+                } else {
+                    truckBytes += bytesNow - bytesBefore;
+                }
+
+                System.out.println("round " + round + " " + ((engine == 0) ? "objects  " : "primitive")
+                        + ": " + createBytes + " bytes for lots, " + truckBytes + " bytes for truck commands, "
+                        + time / 1e6 + " ms");
+            }
+        }
+    }
+
+    private static int[] grow(int[] array) {
+        int[] bigger = new int[array.length * 2];
+        System.arraycopy(array, 0, bigger, 0, array.length);
+        return bigger;
+    }
+}
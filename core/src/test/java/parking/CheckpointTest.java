@@ -0,0 +1,111 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Checkpoints restore to the same network, a checkpoint that is cut off fails with an IOException, and
+ * a checkpoint that is not finished leaves the previous one in place.
+ */
+class CheckpointTest {
+    @TempDir
+    Path directory;
+
+
+    // A few hundred lots with waiting, ready and partly loaded trucks.
+    private static AVLTree network(long seed) {
+        AVLTree tree = new AVLTree();
+        Random random = new Random(seed);
+        ByteResultSink sink = new ByteResultSink();
+        for (int i = 0; i < 300; i++) {
+            tree.create_parking_lot(1 + random.nextInt(5000), 1 + random.nextInt(6));
+        }
+        for (int i = 0; i < 3000; i++) {
+            int capacity = 1 + random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    tree.add_truck(i, capacity, sink);
+                    break;
+                case 1:
+                    tree.ready(capacity, sink);
+                    break;
+                default:
+                    tree.load(capacity, 1 + random.nextInt(2 * capacity), sink);
+                    break;
+            }
+            sink.clear();
+        }
+        return tree;
+    }
+
+
+    @Test
+    void restoreGivesBackTheSameNetwork() throws IOException {
+        Path first = directory.resolve("first.ckpt");
+        Path second = directory.resolve("second.ckpt");
+        network(1).checkpoint(first, 1234);
+
+        AVLTree restored = new AVLTree();
+        assertEquals(1234, restored.restore(first));
+        restored.checkpoint(second, 1234);
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        assertFalse(Files.exists(directory.resolve("first.ckpt.tmp")));
+    }
+
+    @Test
+    void truncatedCheckpointThrowsIOException() throws IOException {
+        Path complete = directory.resolve("complete.ckpt");
+        network(2).checkpoint(complete);
+        byte[] bytes = Files.readAllBytes(complete);
+
+        Path truncated = directory.resolve("truncated.ckpt");
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            IOException e = assertThrows(IOException.class, () -> new AVLTree().restore(truncated),
+                    "checkpoint cut off after " + length + " of " + bytes.length + " bytes");
+            if (length >= Checkpoint.HEADER_SIZE) {
+                assertTrue(e.getMessage().startsWith("Truncated checkpoint"), e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void unfinishedCheckpointKeepsThePreviousOne() throws IOException {
+        Path path = directory.resolve("network.ckpt");
+        network(3).checkpoint(path, 10);
+        byte[] before = Files.readAllBytes(path);
+
+        // A writer that is closed without a commit, as when writing the lots fails.
+        try (Checkpoint.Writer writer = new Checkpoint.Writer(path, 20)) {
+            writer.writeInt(1000);
+            writer.writeInt(7);
+        }
+
+        assertArrayEquals(before, Files.readAllBytes(path));
+        assertFalse(Files.exists(directory.resolve("network.ckpt.tmp")));
+        assertEquals(10, new AVLTree().restore(path));
+    }
+
+    @Test
+    void checkpointReplacesThePreviousOne() throws IOException {
+        Path path = directory.resolve("network.ckpt");
+        network(4).checkpoint(path, 10);
+        network(5).checkpoint(path, 20);
+
+        assertEquals(20, new AVLTree().restore(path));
+        assertFalse(Files.exists(directory.resolve("network.ckpt.tmp")));
+    }
+}
@@ -0,0 +1,234 @@
+package parking;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Multi-threaded stress test and throughput measurement for ConcurrentAVLTree.
+ *
+ * First one writer replays a fixed command sequence while readers poll the tree, and its output is
+ * compared with a replay of the same sequence on a plain AVLTree. Then, for each thread count, every
+ * thread runs a random mix of writes, counts and lookups for a while, the read results are checked for
+ * range, the tree is verified afterwards and the throughput is printed.
+ *
+ * ConcurrentStressTest runs both with small sizes as part of the build.
+ *
+ * Usage: java -cp core/target/test-classes:core/target/classes parking.ConcurrentStress [lots] [seconds] [write percent] [threads...]
+ */
+public class ConcurrentStress {
+    private static final int TRUCK_LIMIT = 4;
+
+    // Number of commands the single writer replays in the first check.
+    private static final int WRITER_COMMANDS = 200000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int lots = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 2;
+        int writePercent = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        int[] threadCounts = {1, 4, 16, 64};
+        if (args.length > 3) {
+            threadCounts = new int[args.length - 3];
+            for (int i = 3; i < args.length; i++) {
+                threadCounts[i - 3] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + lots + " lots, "
+                + writePercent + "% writes");
+        checkSingleWriter(lots, 4, WRITER_COMMANDS);
+
+        System.out.println("threads  ops/s         reads/s       writes/s");
+        for (int threads : threadCounts) {
+            run(lots, threads, seconds, writePercent);
+        }
+    }
+
+
+    // Lots with the capacities 2, 4, ..., 2 * lots, each filled halfway with half of its trucks ready.
+    private static void fill(ParkingEngine engine, int lots) {
+        int[] capacities = new int[lots];
+        int[] truckLimits = new int[lots];
+        for (int i = 0; i < lots; i++) {
+            capacities[i] = 2 * (i + 1);
+            truckLimits[i] = TRUCK_LIMIT;
+        }
+        engine.create_parking_lots(capacities, truckLimits, 0, lots);
+
+        ByteResultSink sink = new ByteResultSink();
+        int truckId = 0;
+        for (int i = 0; i < lots; i++) {
+            for (int t = 0; t < TRUCK_LIMIT / 2; t++) {
+                engine.add_truck(truckId++, capacities[i], sink);
+            }
+            engine.ready(capacities[i], sink);
+            sink.clear();
+        }
+    }
+
+    // Runs one random write command. Truck ids are kept apart per thread by the stride.
+    private static void write(ParkingEngine engine, Random random, int maxCapacity, int truckId, ResultSink sink) {
+        int capacity = 1 + random.nextInt(maxCapacity);
+        switch (random.nextInt(3)) {
+            case 0:
+                engine.add_truck(truckId, capacity, sink);
+                break;
+            case 1:
+                engine.ready(capacity, sink);
+                break;
+            default:
+                engine.load(capacity, 1 + random.nextInt(4 * capacity), sink);
+                break;
+        }
+        sink.endLine();
+    }
+
+
+    // Replays a fixed write sequence on one writer thread while readers poll, and compares the output
+    // with the same sequence on a plain AVLTree. Readers must never change what the writer sees.
+    static void checkSingleWriter(int lots, int readers, int commands) throws InterruptedException {
+        int maxCapacity = 2 * lots + 1;
+
+        AVLTree reference = new AVLTree();
+        fill(reference, lots);
+        ByteResultSink expected = new ByteResultSink();
+        Random random = new Random(1);
+        for (int i = 0; i < commands; i++) {
+            write(reference, random, maxCapacity, lots * TRUCK_LIMIT + i, expected);
+        }
+
+        ConcurrentAVLTree tree = new ConcurrentAVLTree();
+        fill(tree, lots);
+        ByteResultSink actual = new ByteResultSink();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readerThreads = new Thread[readers];
+        Thread writer = new Thread(() -> {
+            Random writerRandom = new Random(1);
+            for (int i = 0; i < commands; i++) {
+                write(tree, writerRandom, maxCapacity, lots * TRUCK_LIMIT + i, actual);
+            }
+        });
+        for (int r = 0; r < readers; r++) {
+            long seed = 100 + r;
+            readerThreads[r] = new Thread(() -> {
+                Random readerRandom = new Random(seed);
+                try {
+                    while (writer.isAlive()) {
+                        read(tree, readerRandom, maxCapacity, lots);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread reader : readerThreads) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readerThreads) {
+            reader.join();
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("A reader failed", failure.get());
+        }
+        tree.verify();
+        if (!expected.toString().equals(actual.toString())) {
+            throw new IllegalStateException("The writer's output differs from the sequential replay");
+        }
+        System.out.println("Single writer with " + readers + " readers matches the sequential replay of "
+                + commands + " commands");
+    }
+
+    // Runs one random read and checks that its result is possible at all.
+    private static void read(ConcurrentAVLTree tree, Random random, int maxCapacity, int lots) {
+        int capacity = random.nextInt(maxCapacity + 1);
+        int result;
+        switch (random.nextInt(4)) {
+            case 0:
+            case 1:
+                result = tree.count(capacity);
+                if (result < 0 || result > lots * TRUCK_LIMIT) {
+                    throw new IllegalStateException("count " + capacity + " returned " + result);
+                }
+                break;
+            case 2:
+                result = tree.smallerBiggest(capacity);
+                if (result != -1 && (result >= capacity || result % 2 != 0)) {
+                    throw new IllegalStateException("smallerBiggest " + capacity + " returned " + result);
+                }
+                break;
+            default:
+                result = tree.smallestBiggerHasReady(capacity);
+                if (result != -1 && (result <= capacity || result % 2 != 0)) {
+                    throw new IllegalStateException("smallestBiggerHasReady " + capacity + " returned " + result);
+                }
+                break;
+        }
+    }
+
+
+    // Runs the random mix on the given number of threads for a while and prints the throughput.
+    static void run(int lots, int threads, double seconds, int writePercent) throws InterruptedException {
+        ConcurrentAVLTree tree = new ConcurrentAVLTree();
+        fill(tree, lots);
+        int maxCapacity = 2 * lots + 1;
+
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long duration = (long) (seconds * 1e9);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(thread);
+                ByteResultSink sink = new ByteResultSink();
+                long threadReads = 0;
+                long threadWrites = 0;
+                int truckId = lots * TRUCK_LIMIT + thread;
+                try {
+                    start.await();
+                    long deadline = System.nanoTime() + duration;
+                    // The clock is only read every 256 operations.
+                    while ((threadReads + threadWrites) % 256 != 0 || System.nanoTime() < deadline) {
+                        if (random.nextInt(100) < writePercent) {
+                            write(tree, random, maxCapacity, truckId, sink);
+                            truckId += threads;
+                            sink.clear();
+                            threadWrites++;
+                        } else {
+                            read(tree, random, maxCapacity, lots);
+                            threadReads++;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                reads.addAndGet(threadReads);
+                writes.addAndGet(threadWrites);
+            });
+            workers[t].start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("A worker failed", failure.get());
+        }
+        tree.verify();
+        System.out.printf("%-8d %-13.0f %-13.0f %.0f%n", threads, (reads.get() + writes.get()) / elapsed,
+                reads.get() / elapsed, writes.get() / elapsed);
+    }
+}
@@ -0,0 +1,21 @@
+package parking;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Runs the ConcurrentStress checks with small sizes. Both throw if a reader or worker saw an impossible
+ * result, if the tree fails its verification or if the writer's output differs from a sequential replay.
+ */
+class ConcurrentStressTest {
+
+    @Test
+    void readersDoNotChangeWhatTheWriterSees() throws InterruptedException {
+        ConcurrentStress.checkSingleWriter(2000, 4, 20000);
+    }
+
+    @Test
+    void mixedWorkloadKeepsTheTreeValid() throws InterruptedException {
+        ConcurrentStress.run(2000, 4, 0.5, 20);
+    }
+}
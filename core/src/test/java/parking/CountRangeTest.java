@@ -0,0 +1,140 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * count_range at the ends of the int range, on every engine. low - 1 wraps around for Integer.MIN_VALUE,
+ * so a range from there must count every truck up to high.
+ */
+class CountRangeTest {
+    private static final int MIN = Integer.MIN_VALUE;
+    private static final int MAX = Integer.MAX_VALUE;
+
+    // Lot capacities and the number of trucks put into each.
+    private static final int[] CAPACITIES = {MIN, -5, 3, 10, 20, MAX};
+    private static final int[] TRUCKS = {2, 1, 3, 1, 2, 1};
+
+
+    private static Map<String, Supplier<ParkingEngine>> engines() {
+        Map<String, Supplier<ParkingEngine>> engines = new LinkedHashMap<>();
+        engines.put("avl", AVLTree::new);
+        engines.put("primitive", PrimitiveTruckTree::new);
+        engines.put("array", () -> new ArrayAVLTree(false));
+        engines.put("offheap", () -> new ArrayAVLTree(true));
+        engines.put("concurrent", ConcurrentAVLTree::new);
+        engines.put("sharded", () -> new ShardedParkingNetwork(new int[] {MIN, 0, 15}));
+        engines.put("index-avl", () -> new IndexedParkingNetwork(new AVLTree()));
+        engines.put("index-btree", () -> new IndexedParkingNetwork(new BPlusLotIndex()));
+        engines.put("index-bitmap", () -> new IndexedParkingNetwork(new BitmapLotIndex(15)));
+        return engines;
+    }
+
+    private static void fill(ParkingEngine engine) {
+        ByteResultSink sink = new ByteResultSink();
+        int truckId = 0;
+        for (int i = 0; i < CAPACITIES.length; i++) {
+            engine.create_parking_lot(CAPACITIES[i], 10);
+            for (int t = 0; t < TRUCKS[i]; t++) {
+                engine.add_truck(truckId++, CAPACITIES[i], sink);
+            }
+        }
+    }
+
+    private static int countRange(ParkingEngine engine, int low, int high) {
+        ByteResultSink sink = new ByteResultSink();
+        engine.count_range(low, high, sink);
+        return Integer.parseInt(sink.toString());
+    }
+
+    // Counts the trucks in [low, high] from the lots above.
+    private static int expected(long low, long high) {
+        int total = 0;
+        for (int i = 0; i < CAPACITIES.length; i++) {
+            if (CAPACITIES[i] >= low && CAPACITIES[i] <= high) {
+                total += TRUCKS[i];
+            }
+        }
+        return total;
+    }
+
+
+    @Test
+    void countsFromTheSmallestInt() {
+        int[][] ranges = {{MIN, 10}, {MIN, MIN}, {MIN, MAX}, {MIN, -6}, {MIN + 1, -5}, {-5, 10}, {11, MAX},
+                {MAX, MAX}, {10, 3}, {MAX, MIN}};
+        for (Map.Entry<String, Supplier<ParkingEngine>> entry : engines().entrySet()) {
+            ParkingEngine engine = entry.getValue().get();
+            fill(engine);
+            for (int[] range : ranges) {
+                assertEquals(expected(range[0], range[1]), countRange(engine, range[0], range[1]),
+                        entry.getKey() + " count_range " + range[0] + " " + range[1]);
+            }
+        }
+    }
+
+    @Test
+    void shardedBatchCountsFromTheSmallestInt() {
+        // A batch with no load or delete_parking_lot and at least 256 commands, so the sharded network
+        // runs it on its workers instead of one command at a time.
+        int[][] ranges = {{MIN, 1000}, {MIN, MIN}, {MIN, MAX}, {MIN, -6}, {MIN + 1, -5}, {-5, 10}, {11, MAX},
+                {MAX, MAX}, {10, 3}, {MAX, MIN}};
+        int size = 2 * CAPACITIES.length + 300 * ranges.length;
+        int[] opcodes = new int[size];
+        int[] firsts = new int[size];
+        int[] seconds = new int[size];
+        int count = 0;
+        for (int i = 0; i < CAPACITIES.length; i++) {
+            opcodes[count] = Commands.CREATE_PARKING_LOT;
+            firsts[count] = CAPACITIES[i];
+            seconds[count++] = 10;
+        }
+        int truckId = 0;
+        for (int i = 0; i < CAPACITIES.length; i++) {
+            for (int t = 0; t < TRUCKS[i]; t++) {
+                opcodes[count] = Commands.ADD_TRUCK;
+                firsts[count] = truckId++;
+                seconds[count++] = CAPACITIES[i];
+            }
+        }
+        for (int r = 0; r < 300; r++) {
+            int[] range = ranges[r % ranges.length];
+            opcodes[count] = Commands.COUNT_RANGE;
+            firsts[count] = range[0];
+            seconds[count++] = range[1];
+        }
+
+        ByteResultSink expected = new ByteResultSink();
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < count; i++) {
+            Commands.execute(tree, opcodes[i], firsts[i], seconds[i], expected);
+        }
+        ByteResultSink actual = new ByteResultSink();
+        try (ShardedParkingNetwork sharded = new ShardedParkingNetwork(new int[] {MIN, 0, 15})) {
+            sharded.execute(opcodes, firsts, seconds, count, actual);
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    void snapshotCountsFromTheSmallestInt() {
+        AVLTree tree = new AVLTree(true);
+        fill(tree);
+        LotSnapshot snapshot = tree.snapshot();
+        assertEquals(expected(MIN, 10), snapshot.count_range(MIN, 10));
+        assertEquals(expected(MIN, MAX), snapshot.count_range(MIN, MAX));
+        assertEquals(expected(MIN, MIN), snapshot.count_range(MIN, MIN));
+    }
+
+    @Test
+    void smallestIntRangeOnEmptyNetwork() {
+        for (Map.Entry<String, Supplier<ParkingEngine>> entry : engines().entrySet()) {
+            assertEquals(0, countRange(entry.getValue().get(), MIN, MAX), entry.getKey());
+        }
+    }
+}
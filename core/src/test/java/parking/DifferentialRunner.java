@@ -0,0 +1,155 @@
+package parking;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Replays one input on the reference AVLTree and on other engines and compares their outputs line by line.
+ * The reference runs every command on its own through the line by line Scanner reader, the engines under test run
+ * through the same batched reader as Main, bulk create and add runs included, and once more through the three
+ * threads of PipelinedReplay.
+ * The outputs are kept when they differ, and the exit status is 1.
+ *
+ * DifferentialTest runs it on generated workloads as part of the build.
+ *
+ * Usage: java -cp core/target/test-classes:core/target/classes parking.DifferentialRunner [input.txt] [engine...]
+ *   engines: avl, primitive, array, offheap, concurrent, sharded, persistent, index-avl, index-btree,
+ *   index-bitmap (default: all of them)
+ */
+public class DifferentialRunner {
+    static final String[] ENGINES = {"avl", "primitive", "array", "offheap", "concurrent", "sharded", "persistent",
+            "index-avl", "index-btree", "index-bitmap"};
+
+    // Small enough that the generated inputs also put lots into the AVL fallback of the bitmap index.
+    private static final int BITMAP_MAX_CAPACITY = 1023;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java -cp core/target/test-classes:core/target/classes parking.DifferentialRunner "
+                    + "[input.txt] [engine...]");
+            return;
+        }
+        String inputFileName = args[0];
+        List<String> engines = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            engines.add(args[i]);
+        }
+        if (engines.isEmpty()) {
+            engines.addAll(List.of(ENGINES));
+        }
+        if (!run(inputFileName, engines)) {
+            System.exit(1);
+        }
+    }
+
+
+    // Compares every engine with the reference on the input. Returns true if they all match.
+    static boolean run(String inputFileName, List<String> engines) throws IOException {
+        Path expected = Files.createTempFile("expected-", ".txt");
+        System.out.println("Reference: avl, one command at a time");
+        try (OutputStream out = new FileOutputStream(expected.toFile())) {
+            ByteResultSink sink = new ByteResultSink();
+            Main.runScanner(new AVLTree(), inputFileName, sink, out);
+            sink.writeTo(out);
+        }
+
+        boolean allMatch = true;
+        for (String name : engines) {
+            for (boolean pipelined : new boolean[] {false, true}) {
+                String run = pipelined ? name + "-pipelined" : name;
+                Path actual = Files.createTempFile("output-" + run + "-", ".txt");
+                System.out.println("Engine: " + run);
+                try (OutputStream out = new FileOutputStream(actual.toFile())) {
+                    replay(newEngine(name, inputFileName), inputFileName, pipelined, out);
+                }
+
+                if (compare(expected, actual, run)) {
+                    Files.delete(actual);
+                } else {
+                    System.out.println("  outputs kept in " + expected + " and " + actual);
+                    allMatch = false;
+                }
+            }
+        }
+
+        if (allMatch) {
+            Files.delete(expected);
+            System.out.println("All engines match the reference");
+        }
+        return allMatch;
+    }
+
+
+    // Runs the input on the engine like Main does, batched on this thread or pipelined on three.
+    private static void replay(ParkingEngine engine, String inputFileName, boolean pipelined, OutputStream out)
+            throws IOException {
+        MappedCommandParser parser = new MappedCommandParser(Paths.get(inputFileName));
+        if (pipelined) {
+            new PipelinedReplay(engine, parser, out).run();
+            return;
+        }
+        ByteResultSink sink = new ByteResultSink();
+        Main.runBatched(engine, parser, sink, out);
+        sink.writeTo(out);
+    }
+
+    // Returns the engine with the given name. The input is only read by the sharded network, for its shard bounds.
+    static ParkingEngine newEngine(String name, String inputFileName) throws IOException {
+        switch (name) {
+            case "avl":
+                return new AVLTree();
+            case "primitive":
+                return new PrimitiveTruckTree();
+            case "array":
+                return new ArrayAVLTree(false);
+            case "offheap":
+                return new ArrayAVLTree(true);
+            case "concurrent":
+                return new ConcurrentAVLTree();
+            case "persistent":
+                return new AVLTree(true);
+            case "index-avl":
+                return new IndexedParkingNetwork(new AVLTree());
+            case "index-btree":
+                return new IndexedParkingNetwork(new BPlusLotIndex());
+            case "index-bitmap":
+                return new IndexedParkingNetwork(new BitmapLotIndex(BITMAP_MAX_CAPACITY));
+            case "sharded":
+                return ShardedParkingNetwork.forInput(new MappedCommandParser(Paths.get(inputFileName)), 4);
+            default:
+                throw new IllegalArgumentException("Unknown engine " + name);
+        }
+    }
+
+    // Compares two outputs line by line and prints the first difference. Returns true if they are equal.
+    private static boolean compare(Path expected, Path actual, String name) throws IOException {
+        try (BufferedReader expectedReader = Files.newBufferedReader(expected, StandardCharsets.US_ASCII);
+             BufferedReader actualReader = Files.newBufferedReader(actual, StandardCharsets.US_ASCII)) {
+            long line = 0;
+            while (true) {
+                String expectedLine = expectedReader.readLine();
+                String actualLine = actualReader.readLine();
+                line++;
+                if (expectedLine == null && actualLine == null) {
+                    System.out.println("  " + name + " matches the reference on " + (line - 1) + " lines");
+                    return true;
+                }
+                if (expectedLine == null || !expectedLine.equals(actualLine)) {
+                    System.out.println("  " + name + " differs at line " + line);
+                    System.out.println("    expected: " + (expectedLine == null ? "<end of output>" : expectedLine));
+                    System.out.println("    actual:   " + (actualLine == null ? "<end of output>" : actualLine));
+                    return false;
+                }
+            }
+        }
+    }
+}
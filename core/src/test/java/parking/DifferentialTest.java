@@ -0,0 +1,60 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+
+/**
+ * Runs DifferentialRunner on every engine, for small seeded workloads of different shapes and for the
+ * files in inputs/.
+ */
+class DifferentialTest {
+    private static final String COMMANDS = "20000";
+
+    @TempDir
+    Path directory;
+
+
+    // WorkloadGenerator options, one workload each.
+    static Stream<String> workloads() {
+        return Stream.of(
+                "--seed 1",
+                "--seed 2 --mix add_truck=4,ready=2,load=5,count=1,count_range=1,delete_parking_lot=1",
+                "--seed 3 --lots 200 --max-trucks 2 --skew 2 --mix add_truck=5,ready=2,load=3,count=3",
+                "--seed 4 --max-capacity 5000 --load-factor 20 --mix add_truck=3,ready=3,load=2,delete_parking_lot=1",
+                "--seed 5 --lots 50 --max-capacity 60 --mix add_truck=6,ready=3,load=3,count_range=2,delete_parking_lot=2");
+    }
+
+    @ParameterizedTest
+    @MethodSource("workloads")
+    void generatedWorkloadMatchesTheReference(String options) throws IOException {
+        Path input = directory.resolve("workload.txt");
+        String[] args = (input + " " + COMMANDS + " " + options).split(" ");
+        WorkloadGenerator.main(args);
+
+        assertTrue(DifferentialRunner.run(input.toString(), List.of(DifferentialRunner.ENGINES)), options);
+    }
+
+    @Test
+    void inputFilesMatchTheReference() throws IOException {
+        // The tests run in the core module, the inputs are next to it.
+        Path inputs = Paths.get("..", "inputs");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputs, "*.txt")) {
+            for (Path file : files) {
+                assertTrue(DifferentialRunner.run(file.toString(), List.of(DifferentialRunner.ENGINES)),
+                        file.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+
+/**
+ * Sets and clears random bits of a HierarchicalBitmap next to a TreeSet and checks get, next and previous
+ * against it. The sizes sit around the 64-bit words of the bottom level and the 4096-bit words of the
+ * level above, and most of the bits picked are next to those boundaries, so the searches have to climb
+ * and come back down over them.
+ */
+class HierarchicalBitmapTest {
+    private static final int OPERATIONS = 20000;
+    private static final int MIN = Integer.MIN_VALUE;
+    private static final int MAX = Integer.MAX_VALUE;
+
+
+    static IntStream sizes() {
+        return IntStream.of(1, 2, 63, 64, 65, 127, 4095, 4096, 4097, 64 * 4096, 64 * 4096 + 1);
+    }
+
+
+    private static int expectedNext(TreeSet<Integer> model, int size, int index) {
+        if (index >= size) {
+            return -1;
+        }
+        Integer found = model.ceiling(Math.max(index, 0));
+        return (found == null) ? -1 : found;
+    }
+
+    private static int expectedPrevious(TreeSet<Integer> model, int size, int index) {
+        if (index < 0) {
+            return -1;
+        }
+        Integer found = model.floor(Math.min(index, size - 1));
+        return (found == null) ? -1 : found;
+    }
+
+    private static void check(HierarchicalBitmap bitmap, TreeSet<Integer> model, int size, int index) {
+        assertEquals(expectedNext(model, size, index), bitmap.next(index), "next " + index);
+        assertEquals(expectedPrevious(model, size, index), bitmap.previous(index), "previous " + index);
+        if (index >= 0 && index < size) {
+            assertEquals(model.contains(index), bitmap.get(index), "get " + index);
+        }
+    }
+
+    private static void checkEnds(HierarchicalBitmap bitmap, TreeSet<Integer> model, int size) {
+        for (int index : new int[] {MIN, -1, 0, 1, size - 2, size - 1, size, size + 1, MAX}) {
+            check(bitmap, model, size, index);
+        }
+    }
+
+    // An index in [0, size), most of the time within one of a multiple of 64 or 4096, or of an end.
+    private static int pick(Random random, int size) {
+        int index;
+        switch (random.nextInt(4)) {
+            case 0:
+                index = random.nextInt(size);
+                break;
+            case 1:
+                index = 64 * random.nextInt(size / 64 + 1) + random.nextInt(3) - 1;
+                break;
+            case 2:
+                index = 4096 * random.nextInt(size / 4096 + 1) + random.nextInt(3) - 1;
+                break;
+            default:
+                index = random.nextBoolean() ? random.nextInt(2) : size - 1 - random.nextInt(2);
+                break;
+        }
+        return Math.min(Math.max(index, 0), size - 1);
+    }
+
+
+    @ParameterizedTest
+    @MethodSource("sizes")
+    void matchesTreeSet(int size) {
+        HierarchicalBitmap bitmap = new HierarchicalBitmap(size);
+        TreeSet<Integer> model = new TreeSet<>();
+        Random random = new Random(size);
+        checkEnds(bitmap, model, size);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            // Mostly sets early on and mostly clears later, so the set goes from sparse to dense and
+            // back, and the searches run over long empty stretches.
+            int index = pick(random, size);
+            if (random.nextInt(OPERATIONS) > i) {
+                bitmap.set(index);
+                model.add(index);
+            } else {
+                bitmap.clear(index);
+                model.remove(index);
+            }
+            check(bitmap, model, size, index);
+            check(bitmap, model, size, index - 1);
+            check(bitmap, model, size, index + 1);
+            check(bitmap, model, size, pick(random, size));
+            if (i % 500 == 0) {
+                checkEnds(bitmap, model, size);
+            }
+        }
+        checkEnds(bitmap, model, size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("sizes")
+    void findsASingleBitFromEveryEnd(int size) {
+        // With one bit set every search that misses its own word has to go up to the top level.
+        for (int bit : new int[] {0, size / 2, size - 1}) {
+            HierarchicalBitmap bitmap = new HierarchicalBitmap(size);
+            TreeSet<Integer> model = new TreeSet<>();
+            bitmap.set(bit);
+            model.add(bit);
+            checkEnds(bitmap, model, size);
+            check(bitmap, model, size, bit);
+            check(bitmap, model, size, bit - 1);
+            check(bitmap, model, size, bit + 1);
+
+            bitmap.clear(bit);
+            model.remove(bit);
+            checkEnds(bitmap, model, size);
+            check(bitmap, model, size, bit);
+        }
+    }
+
+    @Test
+    void emptyBitmapFindsNothing() {
+        HierarchicalBitmap bitmap = new HierarchicalBitmap(0);
+        for (int index : new int[] {MIN, -1, 0, 1, 64, MAX}) {
+            assertEquals(-1, bitmap.next(index), "next " + index);
+            assertEquals(-1, bitmap.previous(index), "previous " + index);
+        }
+    }
+}
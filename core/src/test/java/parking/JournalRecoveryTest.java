@@ -0,0 +1,175 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * A run with a journal and a restored checkpoint dies partway through, and the next run recovers from
+ * the checkpoint and the journal. Together with the run that wrote the checkpoint, the output has to be
+ * the same as a straight run over the whole input.
+ */
+class JournalRecoveryTest {
+    private static final int COMMANDS = 40000;
+    private static final int CHECKPOINT_COMMANDS = 10000;
+    // The crashed run reads two parser batches, so it dies after journaling part of the first one.
+    private static final int SYNC_EVERY = 1000;
+    private static final long SYNC_MILLIS = 1_000_000;
+
+    @TempDir
+    Path directory;
+
+
+    /**
+     * Passes the commands of a source through until more than a limit were read, then fails as if the
+     * process had been killed.
+     */
+    private static final class DyingSource implements CommandSource {
+        private final CommandSource source;
+        private final long limit;
+        private long read = 0;
+
+        DyingSource(CommandSource source, long limit) {
+            this.source = source;
+            this.limit = limit;
+        }
+
+        @Override
+        public int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException {
+            int count = source.parse(opcodes, firsts, seconds);
+            read += count;
+            if (read > limit) {
+                throw new IllegalStateException("killed");
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+
+    private Path input() throws IOException {
+        Path input = directory.resolve("input.txt");
+        WorkloadGenerator.main(new String[] {input.toString(), Integer.toString(COMMANDS), "--seed", "11", "--lots", "500",
+                "--mix", "add_truck=5,ready=3,load=3,count=1,count_range=1,delete_parking_lot=1"});
+        return input;
+    }
+
+    private static byte[] run(ParkingEngine engine, Path input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteResultSink sink = new ByteResultSink();
+        Main.runBatched(engine, new MappedCommandParser(input), sink, out);
+        sink.writeTo(out);
+        return out.toByteArray();
+    }
+
+    // Runs the first commands of the input and writes a checkpoint of them.
+    private byte[] runAndCheckpoint(Path input, Path checkpoint) throws IOException {
+        List<String> lines = Files.readAllLines(input);
+        Path firstDay = directory.resolve("first-day.txt");
+        Files.write(firstDay, lines.subList(0, CHECKPOINT_COMMANDS));
+        AVLTree tree = new AVLTree();
+        byte[] output = run(tree, firstDay);
+        tree.checkpoint(checkpoint, CHECKPOINT_COMMANDS);
+        return output;
+    }
+
+
+    @Test
+    void recoversAfterARunWithCheckpointDies() throws IOException {
+        Path input = input();
+        Path checkpoint = directory.resolve("first-day.ckpt");
+        Path journalPath = directory.resolve("run.journal");
+        byte[] expected = run(new AVLTree(), input);
+        byte[] firstDay = runAndCheckpoint(input, checkpoint);
+
+        // The run dies in its second batch. The journal is dropped without a sync, which loses the
+        // commands appended since the last one, and a half-written command is left at its end.
+        AVLTree crashed = new AVLTree();
+        long skip = crashed.restore(checkpoint);
+        CommandJournal dead = new CommandJournal(journalPath, skip, SYNC_EVERY, SYNC_MILLIS);
+        CommandSource dying = new DyingSource(new MappedCommandParser(input), 20000);
+        assertThrows(IllegalStateException.class, () -> Main.runJournaled(crashed, dying, journalPath, dead, skip,
+                new ByteResultSink(), new ByteArrayOutputStream()));
+        Files.write(journalPath, new byte[] {(byte) Commands.ADD_TRUCK, (byte) 0x80}, StandardOpenOption.APPEND);
+
+        AVLTree recovered = new AVLTree();
+        long restored = recovered.restore(checkpoint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected.length);
+        ByteResultSink sink = new ByteResultSink();
+        try (CommandJournal journal = new CommandJournal(journalPath, restored, SYNC_EVERY, SYNC_MILLIS)) {
+            assertEquals(CHECKPOINT_COMMANDS, journal.getBaseCount());
+            // The first batch holds 16384 commands, the ones after the checkpoint were synced in thousands.
+            assertEquals(6000, journal.getRecoveredCount());
+            long commandCount = Main.runJournaled(recovered, new MappedCommandParser(input), journalPath, journal,
+                    restored, sink, out);
+            assertEquals(COMMANDS, commandCount);
+            assertEquals(COMMANDS, journal.getCommandCount());
+        }
+        sink.writeTo(out);
+
+        ByteArrayOutputStream both = new ByteArrayOutputStream(expected.length);
+        both.write(firstDay);
+        both.write(out.toByteArray());
+        assertArrayEquals(expected, both.toByteArray());
+    }
+
+    @Test
+    void recoversWithoutCheckpoint() throws IOException {
+        Path input = input();
+        Path journalPath = directory.resolve("run.journal");
+        byte[] expected = run(new AVLTree(), input);
+
+        AVLTree crashed = new AVLTree();
+        CommandJournal dead = new CommandJournal(journalPath, 0, SYNC_EVERY, SYNC_MILLIS);
+        CommandSource dying = new DyingSource(new MappedCommandParser(input), 20000);
+        assertThrows(IllegalStateException.class, () -> Main.runJournaled(crashed, dying, journalPath, dead, 0,
+                new ByteResultSink(), new ByteArrayOutputStream()));
+
+        AVLTree recovered = new AVLTree();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected.length);
+        ByteResultSink sink = new ByteResultSink();
+        try (CommandJournal journal = new CommandJournal(journalPath, 0, SYNC_EVERY, SYNC_MILLIS)) {
+            assertEquals(16000, journal.getRecoveredCount());
+            Main.runJournaled(recovered, new MappedCommandParser(input), journalPath, journal, 0, sink, out);
+        }
+        sink.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    void refusesJournalThatDoesNotContinueTheCheckpoint() throws IOException {
+        Path input = input();
+        Path checkpoint = directory.resolve("first-day.ckpt");
+        Path journalPath = directory.resolve("run.journal");
+        runAndCheckpoint(input, checkpoint);
+
+        // A journal of the first 100 commands, written without the checkpoint.
+        try (CommandJournal journal = new CommandJournal(journalPath, 0, SYNC_EVERY, SYNC_MILLIS)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(Commands.COUNT, i, 0);
+            }
+        }
+
+        AVLTree tree = new AVLTree();
+        long restored = tree.restore(checkpoint);
+        try (CommandJournal journal = new CommandJournal(journalPath, restored, SYNC_EVERY, SYNC_MILLIS)) {
+            assertEquals(0, journal.getBaseCount());
+            assertThrows(IOException.class, () -> Main.runJournaled(tree, new MappedCommandParser(input), journalPath,
+                    journal, restored, new ByteResultSink(), new ByteArrayOutputStream()));
+        }
+    }
+}
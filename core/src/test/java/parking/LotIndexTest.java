@@ -0,0 +1,311 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+/**
+ * Runs random inserts, removes and truck changes on a LotIndex next to a TreeMap of the same lots, and
+ * checks every search and count against a scan of the map. The B+-tree gets enough lots to split its
+ * pages over three levels and enough removes to merge them back down to an empty root. The bitmap index
+ * gets lots on both sides of its capacity range, so its answers mix the bitmaps and the tree next to them.
+ */
+class LotIndexTest {
+    private static final int OPERATIONS = 20000;
+    private static final int MANY_LOTS = 20000;
+    private static final int MIN = Integer.MIN_VALUE;
+    private static final int MAX = Integer.MAX_VALUE;
+    // The capacities the bitmap index keeps in its bitmaps, unless a test sets its own.
+    private static final int BITMAP_MAX_CAPACITY = 5000;
+
+
+    static Stream<String> indexes() {
+        return Stream.of("btree", "avl", "bitmap");
+    }
+
+    private static LotIndex newIndex(String name) {
+        return Main.newLotIndex(name, BITMAP_MAX_CAPACITY);
+    }
+
+
+    // The lots of the index by capacity, searched by walking the map.
+    private static final class Model {
+        final TreeMap<Integer, ParkingLot> lots = new TreeMap<>();
+
+        ParkingLot floorNotFull(int capacity) {
+            for (ParkingLot lot : lots.headMap(capacity, true).descendingMap().values()) {
+                if (lot.getOccupiedCapacity() < lot.getTruckLimit()) {
+                    return lot;
+                }
+            }
+            return null;
+        }
+
+        ParkingLot ceilingWithWaiting(int capacity) {
+            for (ParkingLot lot : lots.tailMap(capacity, true).values()) {
+                if (lot.getWaitingCount() != 0) {
+                    return lot;
+                }
+            }
+            return null;
+        }
+
+        ParkingLot ceilingWithReady(int capacity) {
+            for (ParkingLot lot : lots.tailMap(capacity, true).values()) {
+                if (lot.getReadyCount() != 0) {
+                    return lot;
+                }
+            }
+            return null;
+        }
+
+        int totalTrucks() {
+            int count = 0;
+            for (ParkingLot lot : lots.values()) {
+                count += lot.getOccupiedCapacity();
+            }
+            return count;
+        }
+
+        int countAbove(int capacity) {
+            int count = 0;
+            for (ParkingLot lot : lots.tailMap(capacity, false).values()) {
+                count += lot.getOccupiedCapacity();
+            }
+            return count;
+        }
+
+        // A lot picked at random, or null if there is none.
+        ParkingLot any(Random random) {
+            if (lots.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Integer, ParkingLot> entry = lots.ceilingEntry(random.nextInt());
+            return (entry == null) ? lots.firstEntry().getValue() : entry.getValue();
+        }
+    }
+
+
+    // Checks the searches that look at the lots only, not at their trucks.
+    private static void checkLookups(LotIndex index, Model model, int capacity) {
+        assertSame(model.lots.get(capacity), index.find(capacity), "find " + capacity);
+        Map.Entry<Integer, ParkingLot> floor = model.lots.floorEntry(capacity);
+        assertSame((floor == null) ? null : floor.getValue(), index.floor(capacity), "floor " + capacity);
+        Map.Entry<Integer, ParkingLot> ceiling = model.lots.ceilingEntry(capacity);
+        assertSame((ceiling == null) ? null : ceiling.getValue(), index.ceiling(capacity), "ceiling " + capacity);
+    }
+
+    // Checks the searches that look at the trucks of the lots, and the counts.
+    private static void checkFlags(LotIndex index, Model model, int capacity) {
+        assertSame(model.floorNotFull(capacity), index.floorNotFull(capacity), "floorNotFull " + capacity);
+        assertSame(model.ceilingWithWaiting(capacity), index.ceilingWithWaiting(capacity),
+                "ceilingWithWaiting " + capacity);
+        assertSame(model.ceilingWithReady(capacity), index.ceilingWithReady(capacity), "ceilingWithReady " + capacity);
+        assertEquals(model.countAbove(capacity), index.countAbove(capacity), "countAbove " + capacity);
+    }
+
+    // Capacities from low to high, both inclusive.
+    private static int between(Random random, int low, int high) {
+        return low + random.nextInt(high - low + 1);
+    }
+
+    private static void checkAll(LotIndex index, Model model, Random random, int low, int high) {
+        assertEquals(model.lots.size(), index.size());
+        assertEquals(model.totalTrucks(), index.totalTrucks());
+        int[] probes = {MIN, MIN + 1, -1, 0, 1, MAX - 1, MAX, low - 1, low, high, high + 1,
+                between(random, low, high), between(random, low, high)};
+        for (int capacity : probes) {
+            checkLookups(index, model, capacity);
+            checkFlags(index, model, capacity);
+        }
+        for (int capacity : model.lots.keySet()) {
+            checkLookups(index, model, capacity);
+            checkLookups(index, model, capacity - 1);
+            checkLookups(index, model, capacity + 1);
+        }
+    }
+
+
+    // Changes the trucks of a random lot: a new waiting truck, a waiting one made ready or a ready one
+    // taken out. Returns the lot, or null if nothing changed.
+    private static ParkingLot changeTrucks(Model model, Random random, int truckId) {
+        ParkingLot lot = model.any(random);
+        if (lot == null) {
+            return null;
+        }
+        switch (random.nextInt(3)) {
+            case 0:
+                if (lot.getOccupiedCapacity() == lot.getTruckLimit()) {
+                    return null;
+                }
+                Truck truck = new Truck(truckId, lot.getCapacity());
+                truck.setInLot(lot);
+                lot.waiting.enqueue(truck);
+                lot.setOccupiedCapacity(lot.getOccupiedCapacity() + 1);
+                return lot;
+            case 1:
+                if (lot.getWaitingCount() == 0) {
+                    return null;
+                }
+                lot.ready.enqueue(lot.waiting.dequeue());
+                return lot;
+            default:
+                if (lot.getReadyCount() == 0) {
+                    return null;
+                }
+                lot.ready.dequeue();
+                lot.setOccupiedCapacity(lot.getOccupiedCapacity() - 1);
+                return lot;
+        }
+    }
+
+    private static void randomOperations(LotIndex index, long seed, int low, int high) {
+        Random random = new Random(seed);
+        Model model = new Model();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int capacity = between(random, low, high);
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1: {
+                    // A lot with a capacity already in the index is ignored.
+                    ParkingLot lot = new ParkingLot(capacity, 1 + random.nextInt(4));
+                    model.lots.putIfAbsent(capacity, lot);
+                    index.insert(lot);
+                    break;
+                }
+                case 2: {
+                    ParkingLot lot = model.any(random);
+                    int removed = (lot != null && random.nextBoolean()) ? lot.getCapacity() : capacity;
+                    assertSame(model.lots.remove(removed), index.remove(removed), "remove " + removed);
+                    break;
+                }
+                default: {
+                    ParkingLot lot = changeTrucks(model, random, i);
+                    if (lot != null) {
+                        index.update(lot);
+                    }
+                    break;
+                }
+            }
+            checkFlags(index, model, between(random, low, high));
+            if (i % 1000 == 0) {
+                checkAll(index, model, random, low, high);
+            }
+        }
+        checkAll(index, model, random, low, high);
+    }
+
+
+    @ParameterizedTest
+    @MethodSource("indexes")
+    void randomOperationsOnFewCapacities(String name) {
+        // Few capacities, so most inserts hit an existing lot and most lots have trucks.
+        randomOperations(newIndex(name), 1, -75, 225);
+    }
+
+    @ParameterizedTest
+    @MethodSource("indexes")
+    void randomOperationsOnManyCapacities(String name) {
+        randomOperations(newIndex(name), 2, -(1 << 18), 3 << 18);
+    }
+
+    @ParameterizedTest
+    @MethodSource("indexes")
+    void growsAndShrinksThroughManyPages(String name) {
+        LotIndex index = newIndex(name);
+        Model model = new Model();
+        Random random = new Random(3);
+
+        // Ascending inserts split the last page over and over, the others go in random order.
+        List<Integer> capacities = new ArrayList<>();
+        for (int i = 0; i < MANY_LOTS; i++) {
+            capacities.add(i * 3);
+        }
+        List<Integer> shuffled = new ArrayList<>(capacities.subList(MANY_LOTS / 2, MANY_LOTS));
+        Collections.shuffle(shuffled, random);
+        for (int i = 0; i < MANY_LOTS; i++) {
+            int capacity = (i < MANY_LOTS / 2) ? capacities.get(i) : shuffled.get(i - MANY_LOTS / 2);
+            ParkingLot lot = new ParkingLot(capacity, 1 + random.nextInt(3));
+            model.lots.put(capacity, lot);
+            index.insert(lot);
+            if (i % 7 == 0) {
+                ParkingLot changed = changeTrucks(model, random, i);
+                if (changed != null) {
+                    index.update(changed);
+                }
+            }
+        }
+        for (int i = 0; i < MANY_LOTS; i++) {
+            ParkingLot changed = changeTrucks(model, random, i);
+            if (changed != null) {
+                index.update(changed);
+            }
+        }
+        checkAll(index, model, random, 0, 3 * MANY_LOTS);
+
+        // Removes from the front, from the back and at random, merging the pages back down.
+        Set<Integer> order = new LinkedHashSet<>();
+        for (int i = 0; i < MANY_LOTS / 4; i++) {
+            order.add(3 * i);
+            order.add(3 * (MANY_LOTS - 1 - i));
+        }
+        Collections.shuffle(capacities, random);
+        order.addAll(capacities);
+        int i = 0;
+        for (int capacity : order) {
+            assertSame(model.lots.remove(capacity), index.remove(capacity), "remove " + capacity);
+            assertNull(index.remove(capacity));
+            if (i % 97 == 0) {
+                checkFlags(index, model, random.nextInt(3 * MANY_LOTS));
+            }
+            if (i % 2000 == 0) {
+                checkAll(index, model, random, 0, 3 * MANY_LOTS);
+            }
+            i++;
+        }
+        checkAll(index, model, random, 0, 3 * MANY_LOTS);
+        assertEquals(0, index.size());
+        assertEquals(0, index.totalTrucks());
+    }
+
+    @ParameterizedTest
+    @MethodSource("indexes")
+    void lotsAtTheEndsOfTheIntRange(String name) {
+        LotIndex index = newIndex(name);
+        Model model = new Model();
+        Random random = new Random(4);
+        for (int capacity : new int[] {MIN, MIN + 1, -1, 0, 1, MAX - 1, MAX}) {
+            ParkingLot lot = new ParkingLot(capacity, 2);
+            model.lots.put(capacity, lot);
+            index.insert(lot);
+        }
+        for (int i = 0; i < 200; i++) {
+            ParkingLot changed = changeTrucks(model, random, i);
+            if (changed != null) {
+                index.update(changed);
+            }
+            checkAll(index, model, random, -100, 100);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 63, 64, 4095, 4096})
+    void bitmapAtItsCapacityLimits(int maxCapacity) {
+        // Capacity 0 and maxCapacity are the ends of the bitmaps, -1 and maxCapacity + 1 go to the tree.
+        randomOperations(new BitmapLotIndex(maxCapacity), maxCapacity, -3, maxCapacity + 3);
+    }
+}
@@ -0,0 +1,259 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Runs random commands on an AVLTree in the persistent mode and checks that snapshot() shows the lots
+ * exactly as the live tree has them after every command, and never a state from inside a command:
+ * not while a load places its trucks, not while delete_parking_lot moves them, and not to a thread that
+ * takes snapshots while the writer runs.
+ */
+class LotSnapshotTest {
+    private static final int MIN = Integer.MIN_VALUE;
+    private static final int MAX = Integer.MAX_VALUE;
+    private static final int LOTS = 150;
+    private static final int COMMANDS = 20000;
+    private static final int MAX_CAPACITY = 300;
+
+
+    // Random commands over few capacities, so most of them find a lot and the loads move many trucks.
+    private static final class Workload {
+        final int[] opcodes;
+        final int[] firsts;
+        final int[] seconds;
+
+        Workload(long seed, int count) {
+            Random random = new Random(seed);
+            opcodes = new int[count];
+            firsts = new int[count];
+            seconds = new int[count];
+            for (int i = 0; i < count; i++) {
+                int capacity = 1 + random.nextInt(MAX_CAPACITY);
+                if (i < LOTS) {
+                    opcodes[i] = Commands.CREATE_PARKING_LOT;
+                    firsts[i] = capacity;
+                    seconds[i] = 1 + random.nextInt(8);
+                    continue;
+                }
+                int pick = random.nextInt(20);
+                if (pick < 7) {
+                    opcodes[i] = Commands.ADD_TRUCK;
+                    firsts[i] = i;
+                    seconds[i] = capacity;
+                } else if (pick < 12) {
+                    opcodes[i] = Commands.READY;
+                    firsts[i] = capacity;
+                } else if (pick < 16) {
+                    opcodes[i] = Commands.LOAD;
+                    firsts[i] = capacity;
+                    seconds[i] = random.nextInt(4 * MAX_CAPACITY);
+                } else if (pick < 17) {
+                    opcodes[i] = Commands.COUNT;
+                    firsts[i] = capacity;
+                } else if (pick < 18) {
+                    opcodes[i] = Commands.DELETE_PARKING_LOT;
+                    firsts[i] = capacity;
+                } else {
+                    // New lots keep coming so the deletes do not empty the tree.
+                    opcodes[i] = Commands.CREATE_PARKING_LOT;
+                    firsts[i] = capacity;
+                    seconds[i] = 1 + random.nextInt(8);
+                }
+            }
+        }
+
+        void run(ParkingEngine engine, int i, ResultSink sink) {
+            Commands.execute(engine, opcodes[i], firsts[i], seconds[i], sink);
+        }
+    }
+
+
+    // Every lot of the snapshot with its truck counts, in capacity order.
+    private static String fingerprint(LotSnapshot snapshot) {
+        StringBuilder builder = new StringBuilder();
+        for (LotSnapshot.Lot lot : snapshot.lots()) {
+            builder.append(lot.getCapacity()).append(':').append(lot.getTruckLimit()).append(':')
+                    .append(lot.getWaitingCount()).append(':').append(lot.getReadyCount()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    // The lots of the live tree, walked with ceiling.
+    private static List<ParkingLot> liveLots(AVLTree tree) {
+        List<ParkingLot> lots = new ArrayList<>();
+        ParkingLot lot = tree.ceiling(MIN);
+        while (lot != null) {
+            lots.add(lot);
+            lot = (lot.getCapacity() == MAX) ? null : tree.ceiling(lot.getCapacity() + 1);
+        }
+        return lots;
+    }
+
+    private static int capacityOf(ParkingLot lot) {
+        return (lot == null) ? -1 : lot.getCapacity();
+    }
+
+    private static int capacityOf(LotSnapshot.Lot lot) {
+        return (lot == null) ? -1 : lot.getCapacity();
+    }
+
+    private static void checkMatches(AVLTree tree, LotSnapshot snapshot, Random random) {
+        List<ParkingLot> live = liveLots(tree);
+        List<LotSnapshot.Lot> lots = snapshot.lots();
+        assertEquals(live.size(), lots.size(), "lots");
+        assertEquals(live.size(), snapshot.size(), "size");
+        for (int i = 0; i < live.size(); i++) {
+            ParkingLot expected = live.get(i);
+            LotSnapshot.Lot actual = lots.get(i);
+            assertEquals(expected.getCapacity(), actual.getCapacity(), "capacity");
+            assertEquals(expected.getTruckLimit(), actual.getTruckLimit(), "truck limit " + expected.getCapacity());
+            assertEquals(expected.getOccupiedCapacity(), actual.getOccupiedCapacity(),
+                    "occupied " + expected.getCapacity());
+            assertEquals(expected.getWaitingCount(), actual.getWaitingCount(), "waiting " + expected.getCapacity());
+            assertEquals(expected.getReadyCount(), actual.getReadyCount(), "ready " + expected.getCapacity());
+            assertEquals(capacityOf(expected), capacityOf(snapshot.getLot(expected.getCapacity())));
+        }
+
+        assertEquals(tree.totalTrucks(), snapshot.totalTrucks(), "total trucks");
+        int[] probes = {MIN, 0, 1, MAX_CAPACITY, MAX, random.nextInt(MAX_CAPACITY + 2),
+                random.nextInt(MAX_CAPACITY + 2)};
+        for (int capacity : probes) {
+            assertEquals(tree.countAbove(capacity), snapshot.count(capacity), "count " + capacity);
+            assertEquals(tree.countRange(MIN, capacity), snapshot.count_range(MIN, capacity),
+                    "count_range " + capacity);
+            assertEquals(capacityOf(tree.smallerBiggest(capacity)), capacityOf(snapshot.smallerBiggest(capacity)),
+                    "smallerBiggest " + capacity);
+            assertEquals(capacityOf(tree.smallestBiggerHasReady(capacity)),
+                    capacityOf(snapshot.smallestBiggerHasReady(capacity)), "smallestBiggerHasReady " + capacity);
+            assertEquals(capacityOf(tree.smallestBiggerHasWaiting(capacity)),
+                    capacityOf(snapshot.smallestBiggerHasWaiting(capacity)), "smallestBiggerHasWaiting " + capacity);
+        }
+    }
+
+
+    @Test
+    void snapshotMatchesTheTreeAfterEveryCommand() {
+        Workload commands = new Workload(1, COMMANDS);
+        AVLTree tree = new AVLTree(true);
+        ByteResultSink sink = new ByteResultSink();
+        Random random = new Random(2);
+        for (int i = 0; i < COMMANDS; i++) {
+            commands.run(tree, i, sink);
+            sink.clear();
+            checkMatches(tree, tree.snapshot(), random);
+        }
+    }
+
+    @Test
+    void batchedCommandsPublishTheirWholeRun() {
+        AVLTree tree = new AVLTree(true);
+        Random random = new Random(3);
+        int[] capacities = new int[LOTS];
+        int[] truckLimits = new int[LOTS];
+        for (int i = 0; i < LOTS; i++) {
+            capacities[i] = 1 + random.nextInt(MAX_CAPACITY);
+            truckLimits[i] = 1 + random.nextInt(8);
+        }
+        tree.create_parking_lots(capacities, truckLimits, 0, LOTS);
+        checkMatches(tree, tree.snapshot(), random);
+
+        // A short run is placed one truck at a time, a long one with the merged walk.
+        for (int count : new int[] {3, 4 * LOTS}) {
+            int[] ids = new int[count];
+            int[] truckCapacities = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = i;
+                truckCapacities[i] = 1 + random.nextInt(MAX_CAPACITY);
+            }
+            tree.add_trucks(ids, truckCapacities, 0, count, new ByteResultSink());
+            checkMatches(tree, tree.snapshot(), random);
+        }
+    }
+
+    @Test
+    void noSnapshotFromInsideACommand() {
+        // Takes a snapshot while a load places its trucks and while delete_parking_lot moves them, and
+        // checks it still shows the lots as they were before the command.
+        AtomicReference<String> before = new AtomicReference<>();
+        int[] checks = new int[1];
+        AVLTree tree = new AVLTree(true) {
+            @Override
+            void placeFilledTruck(LoadPlan plan, int i, ParkingLot lotChosen) {
+                super.placeFilledTruck(plan, i, lotChosen);
+                assertEquals(before.get(), fingerprint(snapshot()), "snapshot during load");
+                checks[0]++;
+            }
+
+            @Override
+            void moveTruck(ParkingLot from, ParkingLot to) {
+                super.moveTruck(from, to);
+                assertEquals(before.get(), fingerprint(snapshot()), "snapshot during delete_parking_lot");
+                checks[0]++;
+            }
+        };
+
+        Workload commands = new Workload(4, COMMANDS);
+        ByteResultSink sink = new ByteResultSink();
+        for (int i = 0; i < COMMANDS; i++) {
+            before.set(fingerprint(tree.snapshot()));
+            commands.run(tree, i, sink);
+            sink.clear();
+        }
+        assertTrue(checks[0] > 1000, "only " + checks[0] + " trucks were placed or moved");
+    }
+
+    @Test
+    void concurrentSnapshotsSeeCommandBoundaries() throws InterruptedException {
+        Workload commands = new Workload(5, COMMANDS);
+
+        // The states between two commands, from a run of the same commands on a tree of its own.
+        Set<String> boundaries = new HashSet<>();
+        AVLTree replay = new AVLTree(true);
+        ByteResultSink sink = new ByteResultSink();
+        boundaries.add(fingerprint(replay.snapshot()));
+        for (int i = 0; i < COMMANDS; i++) {
+            commands.run(replay, i, sink);
+            sink.clear();
+            boundaries.add(fingerprint(replay.snapshot()));
+        }
+
+        AVLTree tree = new AVLTree(true);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> seen = new AtomicReference<>();
+        int[] samples = new int[1];
+        Thread reader = new Thread(() -> {
+            while (!done.get() && seen.get() == null) {
+                String state = fingerprint(tree.snapshot());
+                if (!boundaries.contains(state)) {
+                    seen.set(state);
+                }
+                samples[0]++;
+            }
+        }, "snapshot-reader");
+        reader.start();
+
+        ByteResultSink output = new ByteResultSink();
+        for (int i = 0; i < COMMANDS; i++) {
+            commands.run(tree, i, output);
+            output.clear();
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(seen.get(), "a snapshot showed a state from inside a command");
+        assertTrue(samples[0] > 0);
+        assertEquals(fingerprint(replay.snapshot()), fingerprint(tree.snapshot()));
+    }
+}
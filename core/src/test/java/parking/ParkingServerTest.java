@@ -0,0 +1,94 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * A client that sends commands and never reads its replies must not hold back the other clients.
+ */
+class ParkingServerTest {
+    // Far more reply bytes than the server keeps for a connection, plus what the sockets buffer.
+    private static final int FLOOD_COMMANDS = 20_000_000;
+    private static final int COMMANDS = 1000;
+
+
+    private static Socket connect(ServerSocketChannel listener) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(listener.getLocalAddress());
+        return socket;
+    }
+
+    @Test
+    void clientThatDoesNotReadDoesNotBlockTheOthers() throws Exception {
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        ParkingServer server = new ParkingServer(new AVLTree(), 1 << 10);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve(listener);
+            } catch (IOException e) {
+                // The listener was closed.
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+
+        try (Socket flooding = connect(listener); Socket client = connect(listener)) {
+            // Writes until the server stops reading, then stays blocked until the socket is closed.
+            Thread flood = new Thread(() -> {
+                byte[] line = "count 1\n".getBytes(StandardCharsets.US_ASCII);
+                byte[] chunk = new byte[line.length * 1024];
+                for (int i = 0; i < chunk.length; i += line.length) {
+                    System.arraycopy(line, 0, chunk, i, line.length);
+                }
+                try {
+                    OutputStream out = flooding.getOutputStream();
+                    for (int i = 0; i < FLOOD_COMMANDS; i += 1024) {
+                        out.write(chunk);
+                    }
+                } catch (IOException e) {
+                    // Closed at the end of the test.
+                }
+            });
+            flood.setDaemon(true);
+            flood.start();
+            flood.join(Duration.ofSeconds(5).toMillis());
+
+            OutputStream out = client.getOutputStream();
+            StringBuilder commands = new StringBuilder("create_parking_lot 10 5\n");
+            for (int i = 0; i < COMMANDS; i++) {
+                commands.append("count 1\n");
+            }
+            out.write(commands.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            // A blocked read cannot be interrupted, so the socket times out instead.
+            client.setSoTimeout((int) Duration.ofSeconds(30).toMillis());
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            try {
+                for (int i = 0; i < COMMANDS; i++) {
+                    assertEquals("0", in.readLine());
+                }
+            } catch (SocketTimeoutException e) {
+                fail("no replies while another client does not read its own");
+            }
+        } finally {
+            listener.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package parking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+/**
+ * A failure in one stage of PipelinedReplay has to reach the caller of run() and stop the other two
+ * stages, wherever they are waiting. DifferentialTest checks the output of the pipeline on real inputs.
+ */
+class PipelinedReplayTest {
+    // Long enough for a stage stuck on a ring that never moves again to show up as a timeout.
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int BATCH = 1000;
+
+
+    // Gives batches of count commands and throws when asked for the failing one.
+    private static final class FailingSource implements CommandSource {
+        private final int failingBatch;
+        private final IOException failure = new IOException("broken input");
+        private int batches = 0;
+        private boolean closed = false;
+
+        FailingSource(int failingBatch) {
+            this.failingBatch = failingBatch;
+        }
+
+        @Override
+        public int parse(int[] opcodes, int[] firsts, int[] seconds) throws IOException {
+            if (batches++ == failingBatch) {
+                throw failure;
+            }
+            for (int i = 0; i < BATCH; i++) {
+                opcodes[i] = Commands.COUNT;
+                firsts[i] = i;
+            }
+            return BATCH;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+
+    @ParameterizedTest
+    // The first batch, the second and one long after every slot of both rings has been used.
+    @ValueSource(ints = {0, 1, 40})
+    void parserFailureIsRethrown(int failingBatch) {
+        FailingSource source = new FailingSource(failingBatch);
+        PipelinedReplay replay = new PipelinedReplay(new AVLTree(), source, new ByteArrayOutputStream());
+
+        IOException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IOException.class, replay::run));
+        assertSame(source.failure, thrown);
+        assertTrue(source.closed);
+    }
+
+    @Test
+    void engineFailureIsRethrown() {
+        // The executor fails while the parser keeps filling the command ring.
+        AVLTree engine = new AVLTree() {
+            @Override
+            public void count(int capacity, ResultSink sink) {
+                if (capacity == BATCH / 2) {
+                    throw new IllegalStateException("broken engine");
+                }
+                super.count(capacity, sink);
+            }
+        };
+        FailingSource source = new FailingSource(Integer.MAX_VALUE);
+        PipelinedReplay replay = new PipelinedReplay(engine, source, new ByteArrayOutputStream());
+
+        IllegalStateException thrown = assertTimeoutPreemptively(TIMEOUT,
+                () -> assertThrows(IllegalStateException.class, replay::run));
+        assertEquals("broken engine", thrown.getMessage());
+        assertTrue(source.closed);
+    }
+}
@@ -0,0 +1,277 @@
+package parking;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.Random;
+
+
+/**
+ * Writes a seeded, synthetic command file in the input format.
+ * All create_parking_lot commands come first, as in the inputs, and the other commands are drawn
+ * from a weighted mix. The same seed and options always give the same file.
+ *
+ * Usage: java -cp core/target/test-classes:core/target/classes parking.WorkloadGenerator [output.txt] [commands] [options]
+ *   --seed S           seed of the random generator (default 1)
+ *   --like FILE        take the mix, capacity range, truck limits and load sizes from an input file
+ *   --lots N           number of create_parking_lot commands
+ *   --mix NAME=W,...   weights of the other commands, e.g. add_truck=4,ready=2,load=5,count=1
+ *                      delete_parking_lot is off by default and deletes one of the created lots
+ *   --max-capacity C   capacities are drawn from 1..C
+ *   --max-trucks T     truck limits are drawn from 1..T, small values give saturated lots
+ *   --skew Z           capacity skew, 1 is uniform and larger values favour small capacities
+ *   --load-factor F    load amounts go up to F times the capacity, large values give long cascades
+ */
+public class WorkloadGenerator {
+    private static final int OPCODES = Commands.OPCODE_COUNT;
+
+    private static final int BATCH_SIZE = 1 << 14;
+
+    // Weights of the commands indexed by opcode. create_parking_lot is only used for the lot count.
+    private final double[] weights = {1, 4, 2, 5, 1, 0, 0};
+    private long lots = -1;
+    private int maxCapacity = 1000;
+    private int maxTrucks = 6;
+    private double skew = 1;
+    private double loadFactor = 2;
+    private long seed = 1;
+
+    private final byte[] buffer = new byte[1 << 16];
+    private int position = 0;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java -cp core/target/test-classes:core/target/classes parking.WorkloadGenerator "
+                    + "[output.txt] [commands] [--seed S] [--like FILE] [--lots N] [--mix NAME=W,...] [--max-capacity C] "
+                    + "[--max-trucks T] [--skew Z] [--load-factor F]");
+            return;
+        }
+        String outputFileName = args[0];
+        long commands = Long.parseLong(args[1]);
+
+        WorkloadGenerator generator = new WorkloadGenerator();
+        // --like is applied first so the other options can override what it measured.
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--like")) {
+                generator.profile(args[i + 1]);
+            }
+        }
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--like":
+                    break;
+                case "--seed":
+                    generator.seed = Long.parseLong(value);
+                    break;
+                case "--lots":
+                    generator.lots = Long.parseLong(value);
+                    break;
+                case "--mix":
+                    generator.parseMix(value);
+                    break;
+                case "--max-capacity":
+                    generator.maxCapacity = Integer.parseInt(value);
+                    break;
+                case "--max-trucks":
+                    generator.maxTrucks = Integer.parseInt(value);
+                    break;
+                case "--skew":
+                    generator.skew = Double.parseDouble(value);
+                    break;
+                case "--load-factor":
+                    generator.loadFactor = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        double startingTime = System.currentTimeMillis();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFileName), 1 << 16)) {
+            generator.generate(commands, out);
+        }
+        double endingTime = System.currentTimeMillis();
+        System.out.println("Wrote " + commands + " commands to " + outputFileName
+                + " in " + (endingTime - startingTime) / 1000 + " seconds");
+    }
+
+
+    // Measures the command mix and the value ranges of an existing input file.
+    void profile(String inputFileName) throws IOException {
+        int[] opcodes = new int[BATCH_SIZE];
+        int[] firsts = new int[BATCH_SIZE];
+        int[] seconds = new int[BATCH_SIZE];
+        long[] counts = new long[OPCODES];
+        long total = 0;
+        int largestCapacity = 1;
+        int largestTrucks = 1;
+        double largestLoad = 1;
+
+        try (MappedCommandParser parser = new MappedCommandParser(Paths.get(inputFileName))) {
+            int count;
+            while ((count = parser.parse(opcodes, firsts, seconds)) != 0) {
+                for (int i = 0; i < count; i++) {
+                    int opcode = opcodes[i];
+                    counts[opcode]++;
+                    // add_truck is the only command whose capacity is its second argument.
+                    int capacity = (opcode == Commands.ADD_TRUCK) ? seconds[i] : firsts[i];
+                    largestCapacity = Math.max(largestCapacity, capacity);
+                    if (opcode == Commands.CREATE_PARKING_LOT) {
+                        largestTrucks = Math.max(largestTrucks, seconds[i]);
+                    } else if (opcode == Commands.LOAD && firsts[i] > 0) {
+                        largestLoad = Math.max(largestLoad, (double) seconds[i] / firsts[i]);
+                    } else if (opcode == Commands.COUNT_RANGE) {
+                        largestCapacity = Math.max(largestCapacity, seconds[i]);
+                    }
+                }
+                total += count;
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            weights[opcode] = (double) counts[opcode] / total;
+        }
+        maxCapacity = largestCapacity;
+        maxTrucks = largestTrucks;
+        loadFactor = largestLoad;
+    }
+
+    // Parses "name=weight" pairs separated by commas. Commands that are not named keep their weight.
+    void parseMix(String mix) {
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            int opcode = Commands.opcodeOf(parts[0].trim());
+            if (opcode == Commands.UNKNOWN || parts.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + entry);
+            }
+            weights[opcode] = Double.parseDouble(parts[1].trim());
+        }
+    }
+
+
+    // Writes the lots first and then commands - lots commands drawn from the mix.
+    void generate(long commands, OutputStream out) throws IOException {
+        Random random = new Random(seed);
+
+        double otherWeight = 0;
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            if (opcode != Commands.CREATE_PARKING_LOT) {
+                otherWeight += weights[opcode];
+            }
+        }
+        long lotCount = lots;
+        if (lotCount < 0) {
+            double total = otherWeight + weights[Commands.CREATE_PARKING_LOT];
+            lotCount = (total == 0) ? 0 : Math.round(commands * weights[Commands.CREATE_PARKING_LOT] / total);
+        }
+        lotCount = Math.min(lotCount, commands);
+
+        // Cumulative weights of the other commands for drawing an opcode.
+        double[] cumulative = new double[OPCODES];
+        double sum = 0;
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            if (opcode != Commands.CREATE_PARKING_LOT) {
+                sum += weights[opcode];
+            }
+            cumulative[opcode] = sum;
+        }
+        if (sum == 0 && commands > lotCount) {
+            throw new IllegalArgumentException("The mix has no commands besides create_parking_lot");
+        }
+
+        // delete_parking_lot draws from the created capacities.
+        int[] lotCapacities = new int[(int) Math.min(lotCount, Integer.MAX_VALUE - 8)];
+        for (long i = 0; i < lotCount; i++) {
+            int capacity = nextCapacity(random);
+            if (i < lotCapacities.length) {
+                lotCapacities[(int) i] = capacity;
+            }
+            writeCommand(out, Commands.CREATE_PARKING_LOT, capacity, 1 + random.nextInt(maxTrucks));
+        }
+
+        int truckId = 1;
+        for (long i = lotCount; i < commands; i++) {
+            double draw = random.nextDouble() * sum;
+            int opcode = Commands.ADD_TRUCK;
+            while (opcode < OPCODES - 1 && draw >= cumulative[opcode]) {
+                opcode++;
+            }
+
+            switch (opcode) {
+                case Commands.ADD_TRUCK:
+                    writeCommand(out, opcode, truckId++, nextCapacity(random));
+                    break;
+                case Commands.LOAD: {
+                    int capacity = nextCapacity(random);
+                    long limit = Math.max(1, Math.min(Integer.MAX_VALUE - 1, (long) (capacity * loadFactor)));
+                    writeCommand(out, opcode, capacity, 1 + (int) (random.nextDouble() * limit));
+                    break;
+                }
+                case Commands.COUNT_RANGE: {
+                    int low = nextCapacity(random);
+                    int high = nextCapacity(random);
+                    writeCommand(out, opcode, Math.min(low, high), Math.max(low, high));
+                    break;
+                }
+                case Commands.DELETE_PARKING_LOT: {
+                    int capacity = (lotCapacities.length == 0) ? nextCapacity(random)
+                            : lotCapacities[random.nextInt(lotCapacities.length)];
+                    writeCommand(out, opcode, capacity, -1);
+                    break;
+                }
+                default:
+                    writeCommand(out, opcode, nextCapacity(random), -1);
+                    break;
+            }
+        }
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    // A capacity in 1..maxCapacity. With skew above 1 the small capacities are drawn more often.
+    private int nextCapacity(Random random) {
+        double draw = (skew == 1) ? random.nextDouble() : Math.pow(random.nextDouble(), skew);
+        return 1 + (int) (draw * maxCapacity);
+    }
+
+
+    // Writes one command line. A negative second argument is left out.
+    private void writeCommand(OutputStream out, int opcode, int first, int second) throws IOException {
+        if (position > buffer.length - 64) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        String name = Commands.nameOf(opcode);
+        for (int i = 0; i < name.length(); i++) {
+            buffer[position++] = (byte) name.charAt(i);
+        }
+        buffer[position++] = ' ';
+        writeInt(first);
+        if (second >= 0) {
+            buffer[position++] = ' ';
+            writeInt(second);
+        }
+        buffer[position++] = '\n';
+    }
+
+    private void writeInt(int value) {
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // The digits were written backwards.
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+}